@@ -0,0 +1,50 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import sequence.Sequence;
+
+/**
+ * Random and sequential single-character access through
+ * {@linkplain Sequence#charAt(long)}. The scores are per character.
+ * 
+ * @author AzureTriple
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3,time = 1)
+@Measurement(iterations = 5,time = 1)
+@Fork(1)
+public class AccessBenchmark {
+    @Benchmark
+    @OperationsPerInvocation(SequenceState.BATCH)
+    public int charAtRandom(final SequenceState s) {
+        final Sequence seq = s.seq;
+        int sum = 0;
+        for(final long i : s.random) sum += seq.charAt(i);
+        return sum;
+    }
+    /**Reads the next batch of consecutive characters, wrapping at the end.*/
+    @Benchmark
+    @OperationsPerInvocation(SequenceState.BATCH)
+    public int charAtSequential(final SequenceState s) {
+        final Sequence seq = s.seq;
+        final long length = s.length;
+        long i = s.cursor;
+        int sum = 0;
+        for(int n = 0;n < SequenceState.BATCH;++n) {
+            sum += seq.charAt(i);
+            if(++i == length) i = 0L;
+        }
+        s.cursor = i;
+        return sum;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,30 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import sequence.Sequence;
+
+/**
+ * Construction of a sequence from its source data with the builders. For file
+ * sequences, this includes transcoding the file.
+ * 
+ * @author AzureTriple
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3,time = 1)
+@Measurement(iterations = 5,time = 1)
+@Fork(1)
+public class BuildBenchmark {
+    @Benchmark
+    public long build(final SequenceState s) {
+        try(Sequence seq = s.build()) {return seq.size();}
+    }
+}
\ No newline at end of file
@@ -0,0 +1,27 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Comparisons of the sequence with an equal sequence built from the same data,
+ * so that every character is compared.
+ * 
+ * @author AzureTriple
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3,time = 1)
+@Measurement(iterations = 5,time = 1)
+@Fork(1)
+public class CompareBenchmark {
+    @Benchmark public int compareTo(final SequenceState s) {return s.seq.compareTo(s.same);}
+    @Benchmark public boolean equals(final SequenceState s) {return s.seq.equals(s.same);}
+}
\ No newline at end of file
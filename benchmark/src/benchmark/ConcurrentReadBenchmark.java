@@ -0,0 +1,128 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import java.io.File;
+import java.io.IOException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import sequence.Sequence;
+import sequence.Sequence.SimpleSequenceIterator;
+
+/**
+ * Reads from one file sequence which is shared by several threads. Every
+ * invocation does the same total amount of work, which is split evenly between
+ * the threads, so the scores are per character and drop as the reads scale
+ * with the number of cores.
+ * 
+ * @author AzureTriple
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3,time = 1)
+@Measurement(iterations = 5,time = 1)
+@Fork(1)
+public class ConcurrentReadBenchmark {
+    /**The number of characters read by all of the threads per invocation.*/
+    static final int TOTAL = 1 << 16;
+    
+    @Param({"1","2","4","8"})
+    public int threads;
+    /**The number of bytes in the transcoded file.*/
+    @Param({"1M","1G"})
+    public String size;
+    @Param({"false","true"})
+    public boolean mapped;
+    
+    File source;
+    Sequence seq;
+    ExecutorService pool;
+    long[] random;
+    /**The first index of the block which each thread copies.*/
+    long[] blocks;
+    
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        source = SequenceState.write(SequenceState.LATIN,SequenceState.bytes(size));
+        seq = Sequence.fileSequenceBuilder().data(source).mapped(mapped).build();
+        pool = Executors.newFixedThreadPool(threads);
+        final SplittableRandom r = new SplittableRandom(42L);
+        final long length = seq.size();
+        random = new long[TOTAL];
+        for(int i = 0;i < TOTAL;++i) random[i] = r.nextLong(length);
+        blocks = new long[threads];
+        for(int t = 0;t < threads;++t) blocks[t] = r.nextLong(Math.max(1L,length - TOTAL / threads));
+    }
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+        seq.close();
+        source.delete();
+    }
+    
+    /**Runs the task once per thread and sums the results.*/
+    long run(final Task task) throws InterruptedException,ExecutionException {
+        final List<Callable<Long>> tasks = new ArrayList<>(threads);
+        final int share = TOTAL / threads;
+        for(int t = 0;t < threads;++t) {
+            final int id = t;
+            tasks.add(() -> task.run(id,id * share,share));
+        }
+        long sum = 0L;
+        for(final Future<Long> f : pool.invokeAll(tasks)) sum += f.get();
+        return sum;
+    }
+    @FunctionalInterface
+    interface Task {long run(int thread,int offset,int count);}
+    
+    @Benchmark
+    @OperationsPerInvocation(TOTAL)
+    public long charAtRandom() throws InterruptedException,ExecutionException {
+        return run((thread,offset,count) -> {
+            long sum = 0L;
+            for(int i = offset;i < offset + count;++i) sum += seq.charAt(random[i]);
+            return sum;
+        });
+    }
+    @Benchmark
+    @OperationsPerInvocation(TOTAL)
+    public long read() throws InterruptedException,ExecutionException {
+        return run((thread,offset,count) -> {
+            final char[] dst = new char[count];
+            return seq.read(blocks[thread],dst,0,count);
+        });
+    }
+    @Benchmark
+    @OperationsPerInvocation(TOTAL)
+    public long iterate() throws InterruptedException,ExecutionException {
+        return run((thread,offset,count) -> {
+            long sum = 0L;
+            try(Sequence s = seq.subSequence(blocks[thread],blocks[thread] + count);
+                SimpleSequenceIterator i = s.iterator()) {
+                while(i.hasNext()) sum += i.nextChar();
+            }
+            return sum;
+        });
+    }
+}
\ No newline at end of file
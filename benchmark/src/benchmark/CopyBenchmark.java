@@ -0,0 +1,53 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import sequence.MutableSequence;
+import sequence.Sequence;
+
+/**
+ * Views and copies of the sequence. Since a string or array cannot hold every
+ * size in the matrix, the copies are limited to the first
+ * {@linkplain SequenceState#WINDOW} characters.
+ * 
+ * @author AzureTriple
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3,time = 1)
+@Measurement(iterations = 5,time = 1)
+@Fork(1)
+public class CopyBenchmark {
+    /**Creates a view of the middle half of the sequence.*/
+    @Benchmark
+    public char subSequence(final SequenceState s) {
+        final long q = s.length >>> 2;
+        try(Sequence sub = s.seq.subSequence(q,s.length - q)) {return sub.charAt(0L);}
+    }
+    @Benchmark
+    public String toString(final SequenceState s) {
+        if(s.length <= SequenceState.WINDOW) return s.seq.toString();
+        try(Sequence sub = s.seq.subSequence(0L,SequenceState.WINDOW)) {return sub.toString();}
+    }
+    @Benchmark
+    public char[] copyTo(final SequenceState s) {
+        if(s.length <= SequenceState.WINDOW) s.seq.copyTo(s.dst,0);
+        else try(Sequence sub = s.seq.subSequence(0L,SequenceState.WINDOW)) {sub.copyTo(s.dst,0);}
+        return s.dst;
+    }
+    /**Copies the first characters to a new mutable sequence, which widens one-byte files.*/
+    @Benchmark
+    public long mutableCopy(final SequenceState s) {
+        try(Sequence sub = s.seq.subSequence(0L,Math.min(s.length,SequenceState.WINDOW));
+            MutableSequence m = sub.mutableCopy()) {
+            return m.size();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,59 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import sequence.Sequence.SequenceIterator;
+import sequence.Sequence.SimpleSequenceIterator;
+
+/**
+ * Full traversals of the sequence with each kind of iterator.
+ * 
+ * @author AzureTriple
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3,time = 1)
+@Measurement(iterations = 5,time = 1)
+@Fork(1)
+public class IterationBenchmark {
+    @Benchmark
+    public int iterator(final SequenceState s) {
+        int sum = 0;
+        try(SimpleSequenceIterator i = s.seq.iterator()) {
+            for(int c;(c = i.nextChar()) != -1;) sum += c;
+        }
+        return sum;
+    }
+    /**Same as {@linkplain #iterator(SequenceState)}, but boxes each character.*/
+    @Benchmark
+    public int iteratorBoxed(final SequenceState s) {
+        int sum = 0;
+        try(SimpleSequenceIterator i = s.seq.iterator()) {
+            while(i.hasNext()) sum += i.next();
+        }
+        return sum;
+    }
+    @Benchmark
+    public int forwardIterator(final SequenceState s) {
+        int sum = 0;
+        try(SequenceIterator i = s.seq.forwardIterator()) {
+            for(int c;(c = i.nextChar()) != -1;) sum += c;
+        }
+        return sum;
+    }
+    @Benchmark
+    public int reverseIterator(final SequenceState s) {
+        int sum = 0;
+        try(SequenceIterator i = s.seq.reverseIterator()) {
+            for(int c;(c = i.nextChar()) != -1;) sum += c;
+        }
+        return sum;
+    }
+}
\ No newline at end of file
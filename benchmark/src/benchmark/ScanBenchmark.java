@@ -0,0 +1,66 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sequence.Sequence;
+import sequence.Sequence.SequenceIterator;
+
+/**
+ * Compares the vectorized and scalar scanning kernels of the array sequence
+ * iterators. Each benchmark scans a run of whitespace which ends with the only
+ * non-whitespace character in the sequence, so the whole sequence is visited.
+ * 
+ * @author AzureTriple
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3,time = 1)
+@Measurement(iterations = 5,time = 1)
+public class ScanBenchmark {
+    static final String VECTOR = "--add-modules=jdk.incubator.vector",
+                        SCALAR = "-Dsequence.noVector=true";
+    
+    @Param({"64","4096","1048576"})
+    int size;
+    Sequence seq;
+    
+    @Setup
+    public void setup() {
+        final char[] data = new char[size];
+        for(int i = 0;i < size - 1;++i) data[i] = (i & 7) == 0? '\t' : ' ';
+        data[size - 1] = 'x';
+        seq = Sequence.arraySequenceBuilder().data(data).build();
+    }
+    
+    boolean find() {
+        try(SequenceIterator i = seq.forwardIterator()) {return i.find('x');}
+    }
+    Character skipWS() {
+        try(SequenceIterator i = seq.forwardIterator()) {return i.skipWS();}
+    }
+    boolean findReverse() {
+        try(SequenceIterator i = seq.reverseIterator()) {
+            i.jumpTo(size - 2);
+            return i.find('\n');
+        }
+    }
+    
+    @Benchmark @Fork(value = 1,jvmArgsAppend = VECTOR) public boolean findVector() {return find();}
+    @Benchmark @Fork(value = 1,jvmArgsAppend = SCALAR) public boolean findScalar() {return find();}
+    @Benchmark @Fork(value = 1,jvmArgsAppend = VECTOR) public Character skipWSVector() {return skipWS();}
+    @Benchmark @Fork(value = 1,jvmArgsAppend = SCALAR) public Character skipWSScalar() {return skipWS();}
+    @Benchmark @Fork(value = 1,jvmArgsAppend = VECTOR) public boolean findReverseVector() {return findReverse();}
+    @Benchmark @Fork(value = 1,jvmArgsAppend = SCALAR) public boolean findReverseScalar() {return findReverse();}
+}
\ No newline at end of file
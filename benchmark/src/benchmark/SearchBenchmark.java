@@ -0,0 +1,52 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import sequence.Sequence.SequenceIterator;
+
+/**
+ * Scans of the whole sequence with {@linkplain SequenceIterator#find(char)} and
+ * {@linkplain SequenceIterator#skipWS()}.
+ * 
+ * @author AzureTriple
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3,time = 1)
+@Measurement(iterations = 5,time = 1)
+@Fork(1)
+public class SearchBenchmark {
+    /**Searches for a character which is not in the sequence.*/
+    @Benchmark
+    public boolean findMissing(final SequenceState s) {
+        try(SequenceIterator i = s.seq.forwardIterator()) {return i.find('#');}
+    }
+    /**Counts the words, alternating between both scans.*/
+    @Benchmark
+    public int words(final SequenceState s) {
+        int n = 0;
+        try(SequenceIterator i = s.seq.forwardIterator()) {
+            while(i.skipWS() != null) {
+                ++n;
+                if(!i.find(' ')) break;
+            }
+        }
+        return n;
+    }
+    /**Counts the lines while scanning backwards.*/
+    @Benchmark
+    public int linesReverse(final SequenceState s) {
+        int n = 0;
+        try(SequenceIterator i = s.seq.reverseIterator()) {
+            while(i.find('\n')) ++n;
+        }
+        return n;
+    }
+}
\ No newline at end of file
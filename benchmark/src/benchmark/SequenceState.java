@@ -0,0 +1,191 @@
+package benchmark;
+
+import java.util.SplittableRandom;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import sequence.Sequence;
+
+/**
+ * The benchmark matrix shared by every benchmark except {@linkplain ScanBenchmark}.
+ * <p>
+ * The <code>size</code> parameter is the number of bytes which back the
+ * characters, i.e. two bytes per character for arrays and the size of the
+ * transcoded file for file sequences. Indexed file sequences read the UTF-8
+ * input in place, and hold as many characters as <code>FILE_2BYTE</code>. Array sequences are clipped to the
+ * largest possible array, so the largest sizes need a heap of several
+ * gigabytes (<code>-jvmArgsAppend -Xmx12g</code>) and a temporary directory
+ * with room for the generated files.
+ * 
+ * @author AzureTriple
+ */
+@State(Scope.Benchmark)
+public class SequenceState {
+    /**The number of characters visited by the batched benchmarks per invocation.*/
+    public static final int BATCH = 1 << 12;
+    /**The number of characters copied by the <code>toString</code> and <code>copyTo</code> benchmarks.*/
+    static final int WINDOW = 1 << 20;
+    static final int MAX_ARRAY = Integer.MAX_VALUE - 8;
+    
+    /**Text made of single-byte characters.*/
+    static final String LATIN = "The quick brown fox jumps over the lazy dog.\tPack my box with five dozen liquor jugs.\n";
+    /**Text which mixes single-byte characters with ones which need two bytes.*/
+    static final String WIDE = "Lorem 天地玄黄 ipsum\t宇宙洪荒 dolor 日月盈昃 sit\n";
+    
+    /**The sequence types under test.*/
+    public enum Kind {
+        ARRAY(2,LATIN),
+        FILE_1BYTE(1,LATIN),
+        FILE_2BYTE(2,WIDE),
+        FILE_INDEXED(2,WIDE),
+        COMPOUND(2,LATIN),
+        COMPOUND_FILE(1,LATIN),
+        MUTABLE_ARRAY(2,LATIN),
+        MUTABLE_FILE(1,LATIN),
+        MUTABLE_COMPOUND(2,LATIN);
+        
+        /**The number of bytes per character in the backing storage.*/
+        final int width;
+        final String text;
+        Kind(final int width,final String text) {this.width = width; this.text = text;}
+        
+        boolean file() {return this == FILE_1BYTE || this == FILE_2BYTE || this == FILE_INDEXED || this == MUTABLE_FILE;}
+        boolean compound() {return this == COMPOUND || this == COMPOUND_FILE || this == MUTABLE_COMPOUND;}
+        boolean mutable() {return this == MUTABLE_ARRAY || this == MUTABLE_FILE || this == MUTABLE_COMPOUND;}
+    }
+    
+    @Param({"ARRAY","FILE_1BYTE","FILE_2BYTE","FILE_INDEXED","COMPOUND","COMPOUND_FILE","MUTABLE_ARRAY","MUTABLE_FILE","MUTABLE_COMPOUND"})
+    public Kind kind;
+    @Param({"1K","1M","1G","4G"})
+    public String size;
+    
+    /**The input of the builders: either text files or the character arrays.*/
+    File source;
+    File[] sources;
+    char[][] parts;
+    
+    public Sequence seq;
+    /**A sequence which is equal to {@linkplain #seq} but does not share its object.*/
+    public Sequence same;
+    public long length;
+    /**Indices into {@linkplain #seq}, in a random order.*/
+    public long[] random;
+    /**The start of the next sequential batch.*/
+    public long cursor;
+    public char[] dst;
+    
+    /**@return The number of bytes represented by a size such as <code>4G</code>.*/
+    static long bytes(final String size) {
+        final int last = size.length() - 1;
+        final int shift = switch(size.charAt(last)) {
+            case 'K' -> 10;
+            case 'M' -> 20;
+            case 'G' -> 30;
+            default -> -1;
+        };
+        return shift == -1? Long.parseLong(size) : Long.parseLong(size.substring(0,last)) << shift;
+    }
+    
+    static char[] chars(final String text,final long offset,final int length) {
+        final char[] out = new char[length];
+        final int n = text.length();
+        for(int i = 0,j = (int)(offset % n);i < length;++i,j = j + 1 == n? 0 : j + 1)
+            out[i] = text.charAt(j);
+        return out;
+    }
+    /**Writes the specified number of characters of repeated text to a temporary file.*/
+    static File write(final String text,final long count) throws IOException {
+        final File out = Files.createTempFile("sequence-benchmark",".txt").toFile();
+        out.deleteOnExit();
+        // Encode a block of whole repetitions once and write it repeatedly.
+        final int reps = Math.max(1,(1 << 16) / text.length());
+        final ByteBuffer block = ByteBuffer.wrap(text.repeat(reps).getBytes(StandardCharsets.UTF_8));
+        final long perBlock = (long)reps * text.length();
+        try(FileChannel fc = FileChannel.open(out.toPath(),StandardOpenOption.WRITE)) {
+            long left = count;
+            for(;left >= perBlock;left -= perBlock) {
+                block.rewind();
+                while(block.hasRemaining()) fc.write(block);
+            }
+            final ByteBuffer tail = ByteBuffer.wrap(
+                new String(chars(text,0L,(int)left)).getBytes(StandardCharsets.UTF_8)
+            );
+            while(tail.hasRemaining()) fc.write(tail);
+        }
+        return out;
+    }
+    
+    /**Builds a new sequence from the source data.*/
+    public Sequence build() {
+        if(kind.file())
+            return (kind.mutable()? Sequence.mutableFileSequenceBuilder() : Sequence.fileSequenceBuilder())
+                   .data(source)
+                   .indexed(kind == Kind.FILE_INDEXED)
+                   .build();
+        if(kind == Kind.COMPOUND_FILE) {
+            final Sequence[] data = new Sequence[sources.length];
+            for(int i = 0;i < data.length;++i)
+                data[i] = Sequence.fileSequenceBuilder().data(sources[i]).build();
+            return Sequence.compoundSequenceBuilder().data(data).build();
+        }
+        if(kind.compound()) {
+            final Sequence[] data = new Sequence[parts.length];
+            for(int i = 0;i < data.length;++i)
+                data[i] = kind.mutable()? Sequence.mutableArraySequenceBuilder().data(parts[i]).build()
+                                        : Sequence.arraySequenceBuilder().data(parts[i]).build();
+            return kind.mutable()? Sequence.mutableCompoundSequenceBuilder().data(data).build()
+                                 : Sequence.compoundSequenceBuilder().data(data).build();
+        }
+        return kind.mutable()? Sequence.mutableArraySequenceBuilder().data(parts[0]).build()
+                             : Sequence.arraySequenceBuilder().data(parts[0]).build();
+    }
+    
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        long count = bytes(size) / kind.width;
+        if(kind.file()) source = write(kind.text,count);
+        else if(kind == Kind.COMPOUND_FILE) {
+            final long half = count >>> 1;
+            sources = new File[] {write(kind.text,half),write(kind.text,count - half)};
+        } else if(kind.compound()) {
+            // Split the characters into two segments of nearly the same size.
+            final long half = count >>> 1;
+            parts = new char[][] {
+                chars(kind.text,0L,(int)Math.min(MAX_ARRAY,half)),
+                chars(kind.text,half,(int)Math.min(MAX_ARRAY,count - half))
+            };
+        } else parts = new char[][] {chars(kind.text,0L,(int)(count = Math.min(MAX_ARRAY,count)))};
+        seq = build();
+        same = build();
+        length = seq.size();
+        
+        final SplittableRandom r = new SplittableRandom(42L);
+        random = new long[BATCH];
+        for(int i = 0;i < BATCH;++i) random[i] = r.nextLong(length);
+        cursor = 0L;
+        dst = new char[(int)Math.min(WINDOW,length)];
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        try {
+            seq.close();
+            same.close();
+        } catch(final UncheckedIOException e) {}
+        if(source != null) source.delete();
+        if(sources != null) for(final File f : sources) f.delete();
+        parts = null;
+    }
+}
\ No newline at end of file
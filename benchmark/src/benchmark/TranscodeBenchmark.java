@@ -0,0 +1,59 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import java.io.File;
+import java.io.IOException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import sequence.Sequence;
+
+/**
+ * Construction of file sequences from UTF-8 input with different numbers of
+ * decoding threads. A parallelism of one is the single-threaded path.
+ * 
+ * @author AzureTriple
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2,time = 1)
+@Measurement(iterations = 5,time = 1)
+@Fork(1)
+public class TranscodeBenchmark {
+    /**The number of characters in the input.*/
+    @Param({"64M","1G"})
+    public String size;
+    /**Whether the input has characters which need two bytes.*/
+    @Param({"false","true"})
+    public boolean wide;
+    @Param({"1","2","4","8"})
+    public int parallelism;
+    
+    File source;
+    
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        source = SequenceState.write(wide? SequenceState.WIDE : SequenceState.LATIN,SequenceState.bytes(size));
+    }
+    @TearDown(Level.Trial)
+    public void tearDown() {source.delete();}
+    
+    @Benchmark
+    public long build() {
+        try(Sequence seq = Sequence.fileSequenceBuilder().data(source).parallelism(parallelism).build()) {
+            return seq.size();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,100 @@
+package benchmark;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import java.io.File;
+import java.io.IOException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import sequence.MutableFileSequenceBuilder.Durability;
+import sequence.MutableSequence;
+import sequence.MutableSequence.MutableSequenceIterator;
+import sequence.Sequence;
+
+/**
+ * Single-character writes to a {@linkplain MutableSequence} file with each
+ * durability and with or without the write buffer. The scores are per
+ * character.
+ * 
+ * @author AzureTriple
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3,time = 1)
+@Measurement(iterations = 5,time = 1)
+@Fork(1)
+public class WriteBenchmark {
+    /**The number of characters in the file.*/
+    static final long LENGTH = 16L << 20;
+    
+    @Param({"NONE","ON_CLOSE","PERIODIC","GROUP"})
+    public Durability durability;
+    /**The size of the write buffer in bytes, where zero writes through.*/
+    @Param({"0","1048576"})
+    public int writeBuffer;
+    
+    File source;
+    MutableSequence seq;
+    /**The same characters with one byte each, which {@linkplain #setSequence()} copies.*/
+    Sequence narrow;
+    long[] random;
+    long cursor;
+    
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        source = SequenceState.write(SequenceState.LATIN,LENGTH);
+        seq = Sequence.mutableFileSequenceBuilder()
+                      .data(source)
+                      .durability(durability)
+                      .writeBuffer(writeBuffer)
+                      .build();
+        narrow = Sequence.fileSequenceBuilder().data(source).build();
+        final SplittableRandom r = new SplittableRandom(42L);
+        random = new long[SequenceState.BATCH];
+        for(int i = 0;i < random.length;++i) random[i] = r.nextLong(LENGTH);
+        cursor = 0L;
+    }
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        seq.close();
+        narrow.close();
+        source.delete();
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SequenceState.BATCH)
+    public MutableSequence setRandom() {
+        for(final long i : random) seq.set(i,'x');
+        return seq;
+    }
+    /**Writes the next batch of consecutive characters through an iterator, wrapping at the end.*/
+    @Benchmark
+    @OperationsPerInvocation(SequenceState.BATCH)
+    public MutableSequence setSequential() {
+        if(cursor + SequenceState.BATCH > LENGTH) cursor = 0L;
+        try(MutableSequenceIterator itr = seq.forwardIterator()) {
+            itr.jumpTo(cursor);
+            for(int n = 0;n < SequenceState.BATCH;++n) itr.set('y').nextChar();
+        }
+        cursor += SequenceState.BATCH;
+        return seq;
+    }
+    /**Writes the whole file from a sequence with one byte per character.*/
+    @Benchmark
+    @OperationsPerInvocation((int)LENGTH)
+    public MutableSequence setSequence() {return seq.set(0L,narrow);}
+}
\ No newline at end of file
@@ -0,0 +1,78 @@
+package sequence;
+
+import static jdk.incubator.vector.VectorOperators.EQ;
+import static jdk.incubator.vector.VectorOperators.UNSIGNED_LE;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@linkplain CharScan} kernels built on the Vector API. Each kernel compares a
+ * full vector of characters at a time and falls back to the scalar kernels for
+ * the tail which does not fill a vector.
+ * 
+ * @author AzureTriple
+ * 
+ * @implNote Loaded reflectively by {@linkplain CharScan#SCAN}, so that the rest
+ *           of the library does not depend on the incubator module.
+ */
+final class VectorCharScan extends CharScan {
+    static final VectorSpecies<Short> S = ShortVector.SPECIES_PREFERRED;
+    static final int L = S.length();
+    
+    VectorCharScan() {}
+    
+    /**
+     * @return A mask of the lanes which hold ASCII whitespace. Lanes holding
+     *         characters of 128 or above are never set.
+     */
+    static VectorMask<Short> ws(final ShortVector v) {
+        return v.compare(EQ,(short)' ')
+                .or(v.sub((short)9).compare(UNSIGNED_LE,(short)4))
+                .or(v.sub((short)0x1C).compare(UNSIGNED_LE,(short)3));
+    }
+    
+    @Override
+    int indexOf(final char[] a,int from,final int to,final char c) {
+        for(final short k = (short)c;to - from >= L;from += L) {
+            final VectorMask<Short> m = ShortVector.fromCharArray(S,a,from).compare(EQ,k);
+            if(m.anyTrue()) return from + m.firstTrue();
+        }
+        return super.indexOf(a,from,to,c);
+    }
+    @Override
+    int lastIndexOf(final char[] a,int from,final int to,final char c) {
+        for(final short k = (short)c;from - to >= L;from -= L) {
+            final VectorMask<Short> m = ShortVector.fromCharArray(S,a,from - L + 1).compare(EQ,k);
+            if(m.anyTrue()) return from - L + 1 + m.lastTrue();
+        }
+        return super.lastIndexOf(a,from,to,c);
+    }
+    @Override
+    int skipWS(final char[] a,int from,final int to) {
+        while(to - from >= L) {
+            final VectorMask<Short> m = ws(ShortVector.fromCharArray(S,a,from)).not();
+            if(m.anyTrue()) {
+                // Non-ASCII lanes still need the full whitespace check.
+                from += m.firstTrue();
+                if(!isWS(a[from])) return from;
+                ++from;
+            } else from += L;
+        }
+        return super.skipWS(a,from,to);
+    }
+    @Override
+    int lastNonWS(final char[] a,int from,final int to) {
+        while(from - to >= L) {
+            final VectorMask<Short> m = ws(ShortVector.fromCharArray(S,a,from - L + 1)).not();
+            if(m.anyTrue()) {
+                // Non-ASCII lanes still need the full whitespace check.
+                from += m.lastTrue() - L + 1;
+                if(!isWS(a[from])) return from;
+                --from;
+            } else from -= L;
+        }
+        return super.lastNonWS(a,from,to);
+    }
+}
\ No newline at end of file
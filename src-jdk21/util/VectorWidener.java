@@ -0,0 +1,67 @@
+package util;
+
+import static jdk.incubator.vector.VectorOperators.NE;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@linkplain Widener} kernels built on the Vector API. Each kernel converts a
+ * full vector of bytes at a time by rearranging its lanes, and falls back to the
+ * scalar kernels for the tail which does not fill a vector.
+ * 
+ * @author AzureTriple
+ * 
+ * @implNote Loaded reflectively by {@linkplain Widener#KERNEL}, so that the rest
+ *           of the library does not depend on the incubator module.
+ */
+final class VectorWidener extends Widener {
+    static final VectorSpecies<Byte> S = ByteVector.SPECIES_PREFERRED;
+    static final int L = S.length();
+    /**The lanes which hold the low and the high bytes of two-byte characters.*/
+    static final VectorMask<Byte> LOW_BYTES = lanes(1),HIGH_BYTES = lanes(0);
+    /**Moves the bytes of the first and second half of a vector to the low byte of each character.*/
+    static final VectorShuffle<Byte> FIRST = VectorShuffle.fromOp(S,i -> i >>> 1),
+                                     SECOND = VectorShuffle.fromOp(S,i -> (i >>> 1) + (L >>> 1));
+    /**Moves the low bytes of the characters of a vector to its first half, and then to its second half.*/
+    static final VectorShuffle<Byte> PICK = VectorShuffle.fromOp(S,i -> (i << 1 | 1) & L - 1);
+    static final VectorMask<Byte> FIRST_HALF = firstHalf(),
+                                  SECOND_HALF = FIRST_HALF.not();
+    
+    VectorWidener() {}
+    
+    /**@return A mask of every other lane, starting at the specified lane.*/
+    private static VectorMask<Byte> lanes(final int first) {
+        final boolean[] b = new boolean[L];
+        for(int i = first;i < L;i += 2) b[i] = true;
+        return VectorMask.fromArray(S,b,0);
+    }
+    private static VectorMask<Byte> firstHalf() {
+        final boolean[] b = new boolean[L];
+        for(int i = 0;i < L >>> 1;++i) b[i] = true;
+        return VectorMask.fromArray(S,b,0);
+    }
+    
+    @Override
+    void widen(final byte[] src,int s,final byte[] dst,int d,int n) {
+        for(;n >= L;n -= L,s += L,d += L << 1) {
+            final ByteVector v = ByteVector.fromArray(S,src,s);
+            v.rearrange(FIRST,LOW_BYTES).intoArray(dst,d);
+            v.rearrange(SECOND,LOW_BYTES).intoArray(dst,d + L);
+        }
+        super.widen(src,s,dst,d,n);
+    }
+    @Override
+    int narrow(final byte[] src,final int s,final byte[] dst,final int d,final int n) {
+        int i = 0;
+        for(;n - i >= L;i += L) {
+            final ByteVector a = ByteVector.fromArray(S,src,s + (i << 1)),
+                             b = ByteVector.fromArray(S,src,s + (i << 1) + L);
+            if(a.or(b).compare(NE,(byte)0,HIGH_BYTES).anyTrue()) break;
+            a.rearrange(PICK,FIRST_HALF).or(b.rearrange(PICK,SECOND_HALF)).intoArray(dst,d + i);
+        }
+        return i + super.narrow(src,s + (i << 1),dst,d + i,n - i);
+    }
+}
\ No newline at end of file
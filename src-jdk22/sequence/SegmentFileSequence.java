@@ -0,0 +1,126 @@
+package sequence;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import util.FixedSizeCharset;
+import util.NoIO;
+
+/**
+ * A {@linkplain MappedFileSequence} which maps the whole file into a single
+ * {@linkplain MemorySegment}, so it is not limited to windows of 2GB and does
+ * not hold a file handle.
+ * 
+ * @author AzureTriple
+ * 
+ * @implNote The segment is shared by all views and iterators of a sequence and
+ *           is unmapped as soon as the last of these is closed.
+ *           Reading from a closed sequence throws an
+ *           {@linkplain IllegalStateException}.
+ */
+final class SegmentFileSequence extends MappedFileSequence {
+    /**Big-endian characters, as written by {@linkplain FixedSizeCharset}.*/
+    static final ValueLayout.OfChar CHAR = ValueLayout.JAVA_CHAR_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+    
+    /**A mapping of a whole file which is unmapped once it is no longer used.*/
+    static final class Mapping {
+        final Arena arena = Arena.ofShared();
+        final MemorySegment segment;
+        /**The number of open sequences and iterators which use this mapping.*/
+        final AtomicInteger refs = new AtomicInteger(1);
+        
+        Mapping(final File file) throws IOException {
+            try(FileChannel fc = FileChannel.open(file.toPath(),StandardOpenOption.READ)) {
+                segment = fc.map(MapMode.READ_ONLY,0L,fc.size(),arena);
+            } catch(IOException|RuntimeException e) {
+                arena.close();
+                throw e;
+            }
+        }
+        
+        /**@return <code>true</code> iff the mapping was still open.*/
+        boolean retain() {
+            for(int r;(r = refs.get()) != 0;)
+                if(refs.compareAndSet(r,r + 1))
+                    return true;
+            return false;
+        }
+        void release() {if(refs.decrementAndGet() == 0) arena.close();}
+    }
+    
+    final Mapping mapping;
+    final MemorySegment segment;
+    
+    /**@param mapping A mapping which has been retained for this sequence.*/
+    private SegmentFileSequence(final Mapping mapping,final File file,final long start,
+                                final long end,final long length,final String suffix,
+                                final FixedSizeCharset cs) {
+        super(file,start,end,length,suffix,cs,mapping::release);
+        segment = (this.mapping = mapping).segment;
+    }
+    
+    /**Maps the file with a new arena.*/
+    static final class SegmentMapper extends Mapper {
+        SegmentMapper() {}
+        
+        @Override
+        MappedFileSequence map(final File file,final long start,final long end,final long length,
+                               final String suffix,final FixedSizeCharset cs)
+                               throws UncheckedIOException {
+            try {return new SegmentFileSequence(new Mapping(file),file,start,end,length,suffix,cs);}
+            catch(final IOException e) {throw ioe(e);}
+        }
+    }
+    
+    @Override
+    char get(final long i) {
+        return big? segment.get(CHAR,i) : (char)(segment.get(ValueLayout.JAVA_BYTE,i) & 0xFF);
+    }
+    
+    /**
+     * Shares the mapping with the new view. If this sequence has already been
+     * closed, the file is mapped again.
+     */
+    @Override
+    FileSequence share(final long start,final long end) throws UncheckedIOException {
+        final Mapping m;
+        if(mapping.retain()) m = mapping;
+        else {
+            try {m = new Mapping(file);}
+            catch(final IOException e) {throw ioe(e);}
+        }
+        return new SegmentFileSequence(m,file,start,end,end - start,suffix,cs);
+    }
+    
+    /**
+     * Keeps the mapping open for the new iterator. If this sequence has already
+     * been closed, the iterator fails on its first read like the sequence.
+     */
+    @Override
+    Runnable retainBacking() {return mapping.retain()? mapping::release : null;}
+    
+    @NoIO @Override
+    public char charAt(final long index) throws IndexOutOfBoundsException {return get(idx(index));}
+    
+    @Override
+    void copy(final long begin,final char[] arr,final int offset,final int count) {
+        if(big) MemorySegment.copy(segment,CHAR,begin,arr,offset,count);
+        else cs.decode(segment.asSlice(begin,count).asByteBuffer(),arr,offset,count);
+    }
+    /**The segment replaces the windows, which are never mapped.*/
+    @Override
+    boolean bytes(final long begin,final ByteBuffer dst) {
+        dst.put(segment.asSlice(begin,dst.remaining()).asByteBuffer());
+        return true;
+    }
+}
\ No newline at end of file
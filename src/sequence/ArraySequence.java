@@ -1,10 +1,12 @@
 package sequence;
 
-import static java.lang.Character.isWhitespace;
 import static java.lang.Math.max;
 import static java.lang.Math.min;
+import static sequence.CharScan.SCAN;
+import static sequence.CharScan.isWS;
 
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.function.Consumer;
 
 import util.NoIO;
@@ -68,17 +70,18 @@ class ArraySequence implements Sequence {
     
     /**
      * Same as {@linkplain #idx(int,int,int)}, except <code>end</code> is
-     * included in the range of valid indices.
+     * included in the range of valid indices. The index is checked before it is
+     * narrowed, so indices outside the range of an <code>int</code> are rejected.
      */
-    static int ssidx(final int idx,final int start,final int end)
+    static int ssidx(final long idx,final int start,final int end)
                      throws IndexOutOfBoundsException {
-        final int out = idx + (idx < 0? end : start);
+        final long out = idx + (idx < 0L? end : start);
         if(end < out || out < start)
             throw new IndexOutOfBoundsException(
                 "%d is outside the range [%d,%d] (shifted: %d,[0,%d])."
                 .formatted(idx,start,end,out - start,end - start)
             );
-        return out;
+        return (int)out;
     }
     /**
      * Same as {@linkplain #idx(int)}, except <code>end</code> is included in the
@@ -139,12 +142,18 @@ class ArraySequence implements Sequence {
             if(!hasNext()) throw new NoSuchElementException();
             return data[cursor++];
         }
+        @NoIO @Override public int nextChar() {return hasNext()? data[cursor++] : EOS;}
         
         @NoIO @Override
         public void forEachRemaining(final Consumer<? super Character> action) {
             if(action == null) return;
             while(cursor != end) action.accept(data[cursor++]);
         }
+        @NoIO @Override
+        public void forEachChar(final CharConsumer action) {
+            if(action == null) return;
+            while(cursor != end) action.accept(data[cursor++]);
+        }
         
         @NoIO @Override public void close() {}
     }
@@ -181,9 +190,12 @@ class ArraySequence implements Sequence {
             return oob(offset = offset(offset))? null : data[offset];
         }
         @NoIO @Override public Character peek(final long offset) {return peek((int)offset);}
+        @NoIO @Override public int peekChar() {return hasNext()? data[cursor] : EOS;}
         
         @Override public boolean hasNext() {return cursor != lastIdx;}
         @NoIO @Override public abstract Character next();
+        @NoIO @Override public abstract int nextChar();
+        @NoIO @Override public abstract void forEachChar(CharConsumer action);
         
         @NoIO abstract Character iSWS(final int limit);
         @NoIO @Override public Character skipWS() {return iSWS(lastIdx);}
@@ -271,20 +283,24 @@ class ArraySequence implements Sequence {
         @Override int skipidx(final long i) {return (int)min(i,end);}
         
         @NoIO @Override public Character next() {return hasNext()? data[cursor++] : null;}
+        @NoIO @Override public int nextChar() {return hasNext()? data[cursor++] : EOS;}
+        @NoIO @Override
+        public void forEachChar(final CharConsumer action) {
+            if(action == null) return;
+            while(cursor != lastIdx) action.accept(data[cursor++]);
+        }
         
         @NoIO @Override
         Character iSWS(final int limit) {
             // This method trusts that the cursor never underflows via jump.
-            if(cursor < limit) {
-                do if(!isWhitespace(data[cursor])) return data[cursor];
-                while(++cursor != limit);
-            }
+            if(cursor < limit && (cursor = SCAN.skipWS(data,cursor,limit)) != limit)
+                return data[cursor];
             return null;
         }
         @NoIO @Override
         Character iPNWS(final int limit) {
             // This method trusts that the cursor never underflows via jump.
-            return cursor < limit? isWhitespace(data[cursor])
+            return cursor < limit? isWS(data[cursor])
                                  ? iNNWS(limit)
                                  // The cast keeps the return value of iNNWS from
                                  // auto-unboxing, which allows it to return null.
@@ -294,25 +310,30 @@ class ArraySequence implements Sequence {
         @NoIO @Override
         Character iPNNWS(final int limit) {
             // This method trusts that the cursor never underflows via jump.
-            for(int tmp = cursor + 1;tmp < limit;++tmp)
-                if(!isWhitespace(data[tmp]))
-                    return data[tmp];
+            final int tmp = cursor + 1;
+            if(tmp < limit) {
+                final int i = SCAN.skipWS(data,tmp,limit);
+                if(i != limit) return data[i];
+            }
             return null;
         }
         @NoIO @Override
         Character iNNWS(final int limit) {
             // This method trusts that the cursor never underflows via jump.
-            if(cursor < limit)
-                while(++cursor != limit)
-                    if(!isWhitespace(data[cursor]))
-                        return data[cursor];
+            if(cursor < limit && ++cursor != limit &&
+               (cursor = SCAN.skipWS(data,cursor,limit)) != limit)
+                return data[cursor];
             return null;
         }
         @NoIO @Override
         boolean iFind(final int limit,final char c) {
             if(cursor < limit) {
-                do if(data[cursor++] == c) return true;
-                while(cursor != limit);
+                final int i = SCAN.indexOf(data,cursor,limit,c);
+                if(i != limit) {
+                    cursor = i + 1;
+                    return true;
+                }
+                cursor = limit;
             }
             return false;
         }
@@ -345,11 +366,17 @@ class ArraySequence implements Sequence {
         @Override int skipidx(final long i) {return (int)(max(i,-1L) + start);}
         
         @NoIO @Override public Character next() {return hasNext()? data[cursor--] : null;}
+        @NoIO @Override public int nextChar() {return hasNext()? data[cursor--] : EOS;}
+        @NoIO @Override
+        public void forEachChar(final CharConsumer action) {
+            if(action == null) return;
+            while(cursor != lastIdx) action.accept(data[cursor--]);
+        }
         
         @NoIO @Override
         Character iSWS(final int limit) {
             // This method trusts that the cursor never underflows via jump.
-            return cursor > limit? isWhitespace(data[cursor])
+            return cursor > limit? isWS(data[cursor])
                                  ? iNNWS(limit)
                                  // The cast keeps the return value of iNNWS from
                                  // auto-unboxing, which allows it to return null.
@@ -359,33 +386,39 @@ class ArraySequence implements Sequence {
         @NoIO @Override
         Character iPNWS(final int limit) {
             // This method trusts that the cursor never underflows via jump.
-            for(int tmp = cursor;tmp > limit;--tmp)
-                if(!isWhitespace(data[tmp]))
-                    return data[tmp];
+            if(cursor > limit) {
+                final int i = SCAN.lastNonWS(data,cursor,limit);
+                if(i != limit) return data[i];
+            }
             return null;
         }
         @NoIO @Override
         Character iPNNWS(final int limit) {
             // This method trusts that the cursor never underflows via jump.
-            for(int tmp = cursor - 1;tmp > limit;--tmp)
-                if(!isWhitespace(data[tmp]))
-                    return data[tmp];
+            final int tmp = cursor - 1;
+            if(tmp > limit) {
+                final int i = SCAN.lastNonWS(data,tmp,limit);
+                if(i != limit) return data[i];
+            }
             return null;
         }
         @NoIO @Override
         Character iNNWS(final int limit) {
             // This method trusts that the cursor never underflows via jump.
-            if(cursor > limit)
-                while(--cursor != limit)
-                    if(!isWhitespace(data[cursor]))
-                        return data[cursor];
+            if(cursor > limit && --cursor != limit &&
+               (cursor = SCAN.lastNonWS(data,cursor,limit)) != limit)
+                return data[cursor];
             return null;
         }
         @NoIO @Override
         boolean iFind(final int limit,final char c) {
             if(cursor > limit) {
-                do if(data[cursor--] == c) return true;
-                while(cursor != limit);
+                final int i = SCAN.lastIndexOf(data,cursor,limit,c);
+                if(i != limit) {
+                    cursor = i - 1;
+                    return true;
+                }
+                cursor = limit;
             }
             return false;
         }
@@ -416,6 +449,12 @@ class ArraySequence implements Sequence {
         return isEmpty()? EMPTY.reverseIterator() : new RASI(this);
     }
     
+    @NoIO @Override
+    public void forEachChar(final CharConsumer action) {
+        if(action == null) return;
+        for(int i = start;i != end;++i) action.accept(data[i]);
+    }
+    
     @NoIO @Override public void close() {}
     
     @NoIO @Override public String toString() {return String.valueOf(data,start,length);}
@@ -434,6 +473,14 @@ class ArraySequence implements Sequence {
         }
         return this;
     }
+    @NoIO @Override
+    public int read(final long srcStart,final char[] dst,final int off,final int len)
+                    throws IndexOutOfBoundsException {
+        Objects.checkFromIndexSize(off,len,dst.length);
+        final int s = ssidx(srcStart,start,end),n = min(len,end - s);
+        System.arraycopy(data,s,dst,off,n);
+        return n;
+    }
     
     static char[] cpy(final char[] data,final int start,final int length) {
         final char[] cpy = new char[length];
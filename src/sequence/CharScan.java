@@ -0,0 +1,67 @@
+package sequence;
+
+/**
+ * Scanning kernels used by the iterators of array-backed sequences.
+ * <p>
+ * This implementation is scalar. When the <code>jdk.incubator.vector</code>
+ * module is present, {@linkplain #SCAN} is replaced by a vectorized subclass
+ * which is only compiled for newer JDKs. Setting the system property
+ * <code>sequence.noVector</code> to <code>true</code> forces the scalar
+ * kernels.
+ * 
+ * @author AzureTriple
+ * 
+ * @implSpec For all methods, <code>from</code> is the first index to check and
+ *           <code>to</code> is the index at which to stop (exclusive). The
+ *           reverse methods scan downwards, so <code>to &lt; from</code> and
+ *           <code>to</code> may be <code>-1</code>.
+ */
+class CharScan {
+    CharScan() {}
+    
+    /**The kernels used by this process.*/
+    static final CharScan SCAN = load();
+    private static CharScan load() {
+        if(!Boolean.getBoolean("sequence.noVector") &&
+           ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (CharScan)Class.forName("sequence.VectorCharScan")
+                                      .getDeclaredConstructor()
+                                      .newInstance();
+            } catch(final ReflectiveOperationException|LinkageError e) {}
+        }
+        return new CharScan();
+    }
+    
+    /**A bit mask of the characters below 64 which are whitespace.*/
+    static final long ASCII_WS = 0b11111L << 9 | 0b11111L << 28;
+    /**
+     * Same as {@linkplain Character#isWhitespace(char)}, but skips the lookup
+     * for ASCII characters.
+     */
+    static boolean isWS(final char c) {
+        return c < 64? (ASCII_WS >>> c & 1L) != 0L
+                     : c >= 0x80 && Character.isWhitespace(c);
+    }
+    
+    /**@return The index of the first instance of the character, or <code>to</code>.*/
+    int indexOf(final char[] a,int from,final int to,final char c) {
+        while(from != to && a[from] != c) ++from;
+        return from;
+    }
+    /**@return The index of the last instance of the character, or <code>to</code>.*/
+    int lastIndexOf(final char[] a,int from,final int to,final char c) {
+        while(from != to && a[from] != c) --from;
+        return from;
+    }
+    /**@return The index of the first non-whitespace character, or <code>to</code>.*/
+    int skipWS(final char[] a,int from,final int to) {
+        while(from != to && isWS(a[from])) ++from;
+        return from;
+    }
+    /**@return The index of the last non-whitespace character, or <code>to</code>.*/
+    int lastNonWS(final char[] a,int from,final int to) {
+        while(from != to && isWS(a[from])) --from;
+        return from;
+    }
+}
\ No newline at end of file
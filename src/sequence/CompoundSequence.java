@@ -5,6 +5,7 @@ import static java.lang.Math.min;
 import static sequence.FileSequence.ioe;
 
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.function.Consumer;
 
 import java.io.UncheckedIOException;
@@ -368,6 +369,16 @@ class CompoundSequence implements Sequence {
             ++cursor;
             return itr.next();
         }
+        @Override
+        public int nextChar() throws UncheckedIOException {
+            if(!hasNext()) return EOS;
+            if(!itr.hasNext()) {
+                itr.close();
+                ssic.itr = itr = data[++segment].iterator();
+            }
+            ++cursor;
+            return itr.nextChar();
+        }
         
         @Override
         public void forEachRemaining(final Consumer<? super Character> action) throws UncheckedIOException {
@@ -383,6 +394,20 @@ class CompoundSequence implements Sequence {
                 }
             }
         }
+        @Override
+        public void forEachChar(final CharConsumer action) throws UncheckedIOException {
+            if(action == null) return;
+            if(itr != null) {
+                itr.forEachChar(action);
+                ssic.itr = itr = null;
+                final int lastSegment = segment(end - 1L,subSizes);
+                while(++segment <= lastSegment) {
+                    try(SimpleSequenceIterator i = data[segment].iterator()) {
+                        i.forEachChar(action);
+                    }
+                }
+            }
+        }
         
         @Override
         public void close() throws UncheckedIOException {
@@ -460,6 +485,10 @@ class CompoundSequence implements Sequence {
             final int pkSeg = segment(offset,subSizes);
             return data[pkSeg].charAt(relative(offset,pkSeg,subSizes));
         }
+        @Override
+        public int peekChar() throws UncheckedIOException {
+            return itr == null? EOS : itr.peekChar();
+        }
         
         @Override public boolean hasNext() {return cursor != lastIdx;}
         @Override
@@ -471,6 +500,15 @@ class CompoundSequence implements Sequence {
             }
             return null;
         }
+        @Override
+        public int nextChar() throws UncheckedIOException {
+            if(hasNext()) {
+                final int c = itr.nextChar();
+                increment();
+                return c;
+            }
+            return EOS;
+        }
         
         abstract Character iSWS(long limit) throws UncheckedIOException;
         @Override
@@ -805,17 +843,14 @@ class CompoundSequence implements Sequence {
         
         @Override
         String fullStrings(final String current) throws UncheckedIOException {
-            final StringBuilder out = new StringBuilder(current);
-            // Get the index of the last segment, accounting for max string size.
-            final int last = segment(Integer.MAX_VALUE,subSizes);
-            for(int i = segment;++i < last;) out.append(data[i]);
-            final long diff = Integer.MAX_VALUE - out.length();
-            if(diff < data[last].size()) {
-                try(Sequence ss = data[last].subSequence(0L,diff)) {
-                    out.append(ss);
-                }
-            } else out.append(data[last]);
-            return out.toString();
+            // Append the following segments, accounting for max string size.
+            final long from = subSizes[segment];
+            final int c = current.length(),
+                      n = (int)min(end - from,Integer.MAX_VALUE - c);
+            final char[] out = new char[c + n];
+            current.getChars(0,c,out,0);
+            read(data,subSizes,from,out,c,n);
+            return new String(out);
         }
     }
     /**Reverse Compound Sequence Iterator*/
@@ -997,27 +1032,14 @@ class CompoundSequence implements Sequence {
         
         @Override
         String fullStrings(final String current) throws UncheckedIOException {
-            final int first;
-            final StringBuilder out;
-            {
-                final long diff = subSizes[segment - 1] - Integer.MAX_VALUE + current.length();
-                first = segment != 0? segment(diff,subSizes)
-                                    : 0;
-                if(diff > 0L) {
-                    try(
-                        Sequence ss = data[first].subSequence(
-                            relative(
-                                diff,
-                                first,
-                                subSizes
-                            ),
-                            data[first].size()
-                       )
-                    ) {out = new StringBuilder(ss);}
-                } else out = new StringBuilder(data[first]);
-            }
-            for(int i = first + 1;i < segment;++i) out.append(data[i]);
-            return out.append(current).toString();
+            // Prepend the preceding segments, accounting for max string size.
+            final long to = segment != 0? subSizes[segment - 1] : 0L;
+            final int c = current.length(),
+                      n = (int)min(to,Integer.MAX_VALUE - c);
+            final char[] out = new char[n + c];
+            read(data,subSizes,to - n,out,0,n);
+            current.getChars(0,c,out,n);
+            return new String(out);
         }
     }
     
@@ -1042,19 +1064,31 @@ class CompoundSequence implements Sequence {
         if(csc.e != null) throw ioe(csc.e);
     }
     
+    /**
+     * Copies characters to the array with one bulk read per segment, without any
+     * bounds checks.
+     * 
+     * @param begin The index of the first character (inclusive).
+     * @param off   The index in the array of the first character.
+     * @param n     The number of characters to copy.
+     */
+    static void read(final Sequence[] data,final long[] subSizes,final long begin,
+                     final char[] dst,int off,int n) throws UncheckedIOException {
+        if(n == 0) return;
+        int segment = segment(begin,subSizes);
+        for(long r = relative(begin,segment,subSizes);n != 0;r = 0L) {
+            final int c = data[segment++].read(r,dst,off,n);
+            off += c;
+            n -= c;
+        }
+    }
+    
     @Override
     public String toString() throws UncheckedIOException {
-        final StringBuilder out = new StringBuilder();
-        // Get the index of the last segment, accounting for max string size.
-        final int last = segment(Integer.MAX_VALUE,subSizes);
-        for(int i = 0;i < last;++i) out.append(data[i]);
-        final long diff = Integer.MAX_VALUE - out.length();
-        if(diff < data[last].size()) {
-            try(Sequence ss = data[last].subSequence(0L,diff)) {
-                out.append(ss);
-            }
-        } else out.append(data[last]);
-        return out.toString();
+        // Accounting for max string size.
+        final char[] out = new char[(int)min(size(),Integer.MAX_VALUE)];
+        read(data,subSizes,0L,out,0,out.length);
+        return new String(out);
     }
     
     @Override
@@ -1063,18 +1097,24 @@ class CompoundSequence implements Sequence {
         final long size = size();
         if(size > 0L) {
             if(offset < 0) offset += arr.length;
-            if(offset + size > arr.length)
+            if(offset < 0 || offset + size > arr.length)
                 throw new IllegalArgumentException(
                     "Cannot copy sequence of size %d to an array of size %d at index %d."
                     .formatted(size,arr.length,offset)
                 );
-            for(final Sequence s : data) {
-                s.copyTo(arr,offset);
-                offset += s.length();
-            }
+            read(data,subSizes,0L,arr,offset,(int)size);
         }
         return this;
     }
+    @Override
+    public int read(long srcStart,final char[] dst,int off,final int len)
+                    throws IndexOutOfBoundsException,UncheckedIOException {
+        Objects.checkFromIndexSize(off,len,dst.length);
+        final int n = (int)min(len,size() - (srcStart = ssidx(srcStart)));
+        // Split the window across the segments which it overlaps.
+        read(data,subSizes,srcStart,dst,off,n);
+        return n;
+    }
     
     static long[] sscpy(final long[] subSizes) {
         final long[] cpy = new long[subSizes.length];
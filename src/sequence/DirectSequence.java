@@ -0,0 +1,132 @@
+package sequence;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import sequence.TieredSequenceBuilder.Budget;
+import util.FixedSizeCharset;
+
+/**
+ * A {@linkplain MappedFileSequence} whose characters were decoded into a direct
+ * {@linkplain ByteBuffer} instead of a temporary file, so it neither creates a
+ * file nor holds a file handle.
+ * 
+ * @author AzureTriple
+ * 
+ * @implNote The buffer is shared by all views of the sequence, and its memory
+ *           is freed once all of them are garbage collected. Mutable copies are
+ *           written to temporary files like those of other file sequences.
+ */
+final class DirectSequence extends MappedFileSequence {
+    /**The number of bytes decoded at once.*/
+    static final int BLOCK = 1 << 16;
+    
+    /**@param file The input which was decoded, which only names the copies.*/
+    private DirectSequence(final File file,final ByteBuffer buffer,final long length,
+                           final FixedSizeCharset cs) {
+        super(file,new ByteBuffer[] {buffer},0L,length,length,file.getName(),cs);
+    }
+    private DirectSequence(final DirectSequence parent,final long start,final long end) {
+        super(parent,start,end);
+    }
+    
+    /**
+     * Decodes the input into a buffer with one byte per character, which is
+     * widened to two bytes per character at the first character which needs
+     * them.
+     */
+    private static final class Loader {
+        final Budget budget;
+        /**The maximum number of characters in the input.*/
+        final int max;
+        ByteBuffer out;
+        boolean big = false;
+        
+        Loader(final Budget budget,final int max) {
+            this.budget = budget;
+            this.max = max;
+        }
+        
+        /**@return <code>false</code> iff the budget cannot hold the buffer.*/
+        boolean allocate(final int bytes) {
+            if(!budget.reserve(bytes)) return false;
+            final ByteBuffer b = ByteBuffer.allocateDirect(bytes);
+            budget.track(b,bytes);
+            if(out != null) for(int i = 0;i < out.position();++i) b.putChar((char)(out.get(i) & 0xFF));
+            out = b;
+            return true;
+        }
+        /**@return <code>false</code> iff the budget cannot hold the widened buffer.*/
+        boolean put(final CharBuffer C) throws IOException {
+            final char[] a = C.array();
+            int i = C.position();
+            final int l = C.limit();
+            try {
+                if(!big) {
+                    while(i != l && a[i] <= 0xFF) out.put((byte)a[i++]);
+                    if(i != l) {
+                        if(!allocate(max << 1)) return false;
+                        big = true;
+                    }
+                }
+                if(big) {
+                    out.asCharBuffer().put(a,i,l - i);
+                    out.position(out.position() + (l - i << 1));
+                }
+            } catch(final BufferOverflowException e) {
+                throw new IOException("The input grew while it was decoded.",e);
+            }
+            return true;
+        }
+    }
+    /**
+     * Decodes the input into a direct buffer whose memory is charged to the
+     * budget.
+     * 
+     * @return The sequence, or <code>null</code> if the budget cannot hold the
+     *         characters of the input.
+     */
+    static DirectSequence load(final File src,final Charset cs,final Budget budget) throws IOException {
+        final CharsetDecoder d = cs.newDecoder();
+        final long max = (long)Math.ceil(src.length() * (double)d.maxCharsPerByte());
+        // Both buffers must fit in one window.
+        if(max << 1 > WINDOW_SIZE) return null;
+        final Loader L = new Loader(budget,(int)max);
+        if(!L.allocate((int)max)) return null;
+        final ByteBuffer I = ByteBuffer.allocate(BLOCK);
+        final CharBuffer C = CharBuffer.allocate(BLOCK);
+        try(FileChannel in = FileChannel.open(src.toPath(),READ)) {
+            boolean eof = false;
+            CoderResult r;
+            do {
+                if(!eof) eof = in.read(I) == -1;
+                r = d.decode(I.flip(),C,eof);
+                I.compact();
+                if(r.isError()) r.throwException();
+                if(!L.put(C.flip())) return null;
+                C.clear();
+            } while(!eof || r.isOverflow());
+            do {
+                r = d.flush(C);
+                if(!L.put(C.flip())) return null;
+                C.clear();
+            } while(r.isOverflow());
+        }
+        return new DirectSequence(
+            src,
+            L.out.flip(),
+            L.out.limit(),
+            L.big? FixedSizeCharset.Fixed_2 : FixedSizeCharset.Fixed_1
+        );
+    }
+    
+    @Override FileSequence share(final long start,final long end) {return new DirectSequence(this,start,end);}
+}
\ No newline at end of file
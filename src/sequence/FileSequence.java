@@ -3,28 +3,38 @@ package sequence;
 import static java.lang.Character.isWhitespace;
 import static java.lang.Math.max;
 import static java.lang.Math.min;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
 
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.io.UncheckedIOException;
 import java.lang.ref.Cleaner.Cleanable;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import util.FileUtils;
 import util.FixedSizeCharset;
 import util.NoIO;
 import util.NoIO.Suppresses;
 
 /**
- * A {@linkplain Sequence} backed by a {@linkplain RandomAccessFile}.
+ * A {@linkplain Sequence} backed by a {@linkplain FileChannel}.
  * 
  * @author AzureTriple
  * 
@@ -32,7 +42,21 @@ import util.NoIO.Suppresses;
  *           {@linkplain MutableSequence} interface, it does not guarantee that
  *           the file itself will not be modified by external processes.
  * 
- * @implNote Objects of this type may leak resources if not closed.
+ * @implSpec Immutable file sequences support concurrent reads: any number of
+ *           threads may call {@linkplain #charAt(long)},
+ *           {@linkplain #copyTo(char[],int)}, {@linkplain #read}, and
+ *           {@linkplain #toString()} and create views and iterators of the
+ *           same sequence without synchronization. Each iterator must still
+ *           only be used by one thread at a time. Mutable file sequences do
+ *           not synchronize writes with reads.
+ * 
+ * @implNote Objects of this type may leak resources if not closed. All views,
+ *           sub-sequences and iterators of a sequence share one channel, which
+ *           is only closed once the last of them is closed. The channel is only
+ *           accessed with positional reads and writes, so no thread depends on
+ *           a file pointer. If a thread is interrupted while it reads, the
+ *           channel is closed by the runtime and is opened again for the other
+ *           threads.
  */
 class FileSequence implements Sequence {
     static final File TMP_DIR;
@@ -52,6 +76,201 @@ class FileSequence implements Sequence {
         private Mutability(final String mode) {this.mode = mode;}
     }
     
+    /**A channel which is shared by all views of a file and is closed once it is no longer used.*/
+    static class Handle {
+        final File file;
+        final Mutability mutability;
+        /**
+         * The channel, which is replaced if it is closed by an interrupt while it
+         * is still in use.
+         */
+        volatile FileChannel channel;
+        /**The number of open sequences and iterators which use this handle.*/
+        final AtomicInteger refs = new AtomicInteger(1);
+        /**The channel of the asynchronous reads, which is opened by the first of them.*/
+        private AsynchronousFileChannel async = null;
+        /**The snapshots which keep the pages that are overwritten through this handle.*/
+        final List<SnapshotSequence.Shadow> snapshots = new CopyOnWriteArrayList<>();
+        /**The buffer of the writes through this handle, or <code>null</code> if they are written through.*/
+        WriteBehind writes = null;
+        
+        Handle(final File file,final Mutability mutability) throws IOException {
+            this.file = file;
+            this.mutability = mutability;
+            channel = openChannel();
+        }
+        private FileChannel openChannel() throws IOException {
+            return mutability == Mutability.MUTABLE? FileChannel.open(file.toPath(),READ,WRITE)
+                                                   : FileChannel.open(file.toPath(),READ);
+        }
+        
+        /**@return <code>true</code> iff the channel was still open.*/
+        boolean retain() {
+            for(int r;(r = refs.get()) != 0;)
+                if(refs.compareAndSet(r,r + 1))
+                    return true;
+            return false;
+        }
+        void release() throws IOException {
+            if(refs.decrementAndGet() == 0) close();
+        }
+        /**
+         * Flushes the buffered writes, then drops the cached pages of the file and
+         * closes the channels once no sequence uses them.
+         */
+        void close() throws IOException {
+            try {if(writes != null) writes.close(this);}
+            finally {
+                PageCache.invalidate(file);
+                closeChannels();
+            }
+        }
+        final synchronized void closeChannels() throws IOException {
+            try {if(async != null) async.close();}
+            finally {channel.close();}
+        }
+        /**
+         * Replaces the channel after it was closed by an interrupt of another
+         * thread.
+         * 
+         * @param closed The channel which was found to be closed.
+         * 
+         * @return <code>true</code> iff the operation which found the channel
+         *         closed should be retried.
+         */
+        private synchronized boolean reopen(final FileChannel closed) throws IOException {
+            if(Thread.currentThread().isInterrupted() || refs.get() == 0) return false;
+            if(channel == closed) channel = openChannel();
+            return true;
+        }
+        
+        /**
+         * Reads the bytes which start at the position into the remaining space in
+         * the buffer, stopping early at the end of the file. Buffered writes are
+         * visible to the read.
+         * 
+         * @return The number of bytes read.
+         */
+        int read(final ByteBuffer dst,final long pos) throws IOException {
+            final WriteBehind w = writes;
+            if(w == null) return readFile(dst,pos);
+            final int first = dst.position();
+            for(;;) {
+                // Retry if the buffer was flushed while the file was read.
+                final long epoch = w.epoch();
+                final int n = readFile(dst,pos);
+                w.overlay(dst,first,pos,n);
+                if(w.epoch() == epoch) return n;
+                dst.position(first);
+            }
+        }
+        /**Same as {@linkplain #read(ByteBuffer,long)}, but without the buffered writes.*/
+        int readFile(final ByteBuffer dst,long pos) throws IOException {
+            final int first = dst.position();
+            while(dst.hasRemaining()) {
+                final FileChannel fc = channel;
+                final int n;
+                try {n = fc.read(dst,pos);}
+                catch(final ClosedChannelException e) {
+                    if(reopen(fc)) continue;
+                    throw e;
+                }
+                if(n < 0) break;
+                pos += n;
+            }
+            return dst.position() - first;
+        }
+        /**
+         * @return The channel of the asynchronous reads, which is opened if needed.
+         *         The buffered writes are flushed first, since the channel cannot
+         *         see them.
+         */
+        AsynchronousFileChannel async() throws IOException {
+            flush();
+            synchronized(this) {
+                if(refs.get() == 0) throw new ClosedChannelException();
+                if(async == null) async = AsynchronousFileChannel.open(file.toPath(),READ);
+                return async;
+            }
+        }
+        /**Fills the remaining space in the buffer with the bytes which start at the position.*/
+        void readFully(final ByteBuffer dst,final long pos) throws IOException {
+            read(dst,pos);
+            if(dst.hasRemaining()) throw new EOFException();
+        }
+        /**
+         * Writes the remaining bytes in the buffer to the file, starting at the
+         * position, or to the write buffer if there is one.
+         */
+        void writeFully(final ByteBuffer src,final long pos) throws IOException {
+            if(writes != null) writes.write(this,src,pos);
+            else writeFile(src,pos);
+        }
+        /**
+         * Same as {@linkplain #writeFully(ByteBuffer,long)}, but always writes to
+         * the file. The pages which are overwritten are first saved for the
+         * snapshots of the file.
+         */
+        void writeFile(final ByteBuffer src,long pos) throws IOException {
+            for(final SnapshotSequence.Shadow s : snapshots) s.preserve(pos,pos + src.remaining());
+            while(src.hasRemaining()) {
+                final FileChannel fc = channel;
+                try {pos += fc.write(src,pos);}
+                catch(final ClosedChannelException e) {
+                    if(!reopen(fc)) throw e;
+                }
+            }
+        }
+        /**
+         * Writes the bytes in the range <code>[pos,end)</code> to the channel at
+         * its position, which lets the kernel copy them between files.
+         */
+        void transferTo(final long pos,final long end,final FileChannel dst) throws IOException {
+            flush();
+            final long at = dst.position();
+            for(;;) {
+                final FileChannel fc = channel;
+                final long n;
+                // A channel which was closed by an interrupt is reopened, and the
+                // copy starts over.
+                try {n = FileUtils.transfer(fc,pos,end - pos,dst,at);}
+                catch(final ClosedChannelException e) {
+                    if(reopen(fc)) continue;
+                    throw e;
+                }
+                if(n != end - pos) throw new EOFException();
+                return;
+            }
+        }
+        /**Writes the buffered writes to the file.*/
+        void flush() throws IOException {
+            if(writes != null) writes.flush(this);
+        }
+        /**
+         * Adds a snapshot of the file once the buffered writes, which the snapshot
+         * must see, are written to the file.
+         */
+        void snapshot(final SnapshotSequence.Shadow s) throws IOException {
+            if(writes != null) writes.snapshot(this,s);
+            else snapshots.add(s);
+        }
+        /**@see FileChannel#force(boolean)*/
+        void force(final boolean metaData) throws IOException {
+            for(;;) {
+                final FileChannel fc = channel;
+                try {fc.force(metaData); return;}
+                catch(final ClosedChannelException e) {
+                    if(!reopen(fc)) throw e;
+                }
+            }
+        }
+    }
+    /**Opens a new handle to the file.*/
+    static Handle open(final File file,final Mutability mutability) throws UncheckedIOException {
+        try {return new Handle(file,mutability);}
+        catch(IOException|SecurityException e) {throw ioe(e);}
+    }
+    
     /**Wraps an {@linkplain IOException} in an {@linkplain UncheckedIOException}.*/
     static UncheckedIOException ioe(final IOException e) {
         return new UncheckedIOException(e);
@@ -62,41 +281,75 @@ class FileSequence implements Sequence {
     }
     
     static final class fscleaner implements Runnable {
-        RandomAccessFile data;
+        final Handle handle;
+        /**An action which releases resources other than the file handle.*/
+        final Runnable release;
         Exception e = null;
-        fscleaner(final RandomAccessFile data) {this.data = data;}
+        fscleaner(final Handle handle) {this(handle,null);}
+        fscleaner(final Handle handle,final Runnable release) {
+            this.handle = handle;
+            this.release = release;
+        }
         @Override
         public void run() {
-            if(data != null) {
-                try {data.close();}
+            if(handle != null) {
+                try {handle.release();}
                 catch(final Exception e) {this.e = e;}
             }
+            if(release != null) {
+                try {release.run();}
+                catch(final Exception e) {if(this.e == null) this.e = e;}
+            }
         }
     }
     private final Cleanable cleanable;
     final fscleaner fsc;
     final String suffix;
     final File file;
-    final RandomAccessFile data;
+    final Handle handle;
     FixedSizeCharset cs;
     long start,end,length; // Measured in bytes.
     final boolean big;
     final Mutability mutability;
+    /**The default number of bytes read at once by the iterators.*/
+    static final int DEFAULT_BLOCK = 1 << 13;
+    /**
+     * The number of bytes read at once by the iterators. This is always a power of
+     * two which is at least the size of a character, so blocks aligned to it
+     * never split a character.
+     */
+    int block = DEFAULT_BLOCK;
     
     FileSequence(final File file,final long start,final long end,final long length,
                  final Mutability mutability,final String suffix,final FixedSizeCharset cs)
                  throws UncheckedIOException {
-        try {
-            cleanable = CleaningUtil.register(
-                this,
-                fsc = new fscleaner(
-                    data = new RandomAccessFile(
-                        this.file = file,
-                        (this.mutability = mutability).mode
-                    )
-                )
-            );
-        } catch(FileNotFoundException|SecurityException e) {throw ioe(e);}
+        this(open(file,mutability),file,start,end,length,mutability,suffix,cs);
+    }
+    /**@param handle A handle which has been retained for this sequence.*/
+    FileSequence(final Handle handle,final File file,final long start,final long end,
+                 final long length,final Mutability mutability,final String suffix,
+                 final FixedSizeCharset cs) {
+        cleanable = CleaningUtil.register(this,fsc = new fscleaner(this.handle = handle));
+        this.file = file;
+        this.mutability = mutability;
+        this.start = start;
+        this.length = length;
+        this.end = end;
+        this.suffix = suffix;
+        big = (this.cs = cs).size > 1;
+    }
+    /**
+     * Creates an immutable sequence which does not own a file handle. Extending
+     * types must override every method which reads from {@linkplain #handle}.
+     * 
+     * @param release An action which is run once, when the sequence is closed or
+     *                becomes unreachable.
+     */
+    FileSequence(final File file,final long start,final long end,final long length,
+                 final String suffix,final FixedSizeCharset cs,final Runnable release) {
+        cleanable = CleaningUtil.register(this,fsc = new fscleaner(handle = null,release));
+        this.file = file;
+        mutability = Mutability.IMMUTABLE;
         this.start = start;
         this.length = length;
         this.end = end;
@@ -143,17 +396,43 @@ class FileSequence implements Sequence {
      */
     long idx(final long idx) throws IndexOutOfBoundsException {return idx(idx,start,end,cs.size);}
     
-    static char read(final RandomAccessFile data,final boolean big) throws IOException {
-        return big? data.readChar() : (char)data.read();
+    /**
+     * @return The number of bytes per character in the file, or zero if it
+     *         varies. Pages of the {@linkplain PageCache} are only shared by
+     *         sequences which read the file with the same width.
+     */
+    int width() {return cs.size;}
+    
+    /**@return The character which starts at the specified byte index.*/
+    char read(final long i) throws IOException {
+        final long c = i / cs.size;
+        final char[] page = PageCache.get(this,c >>> PageCache.PAGE_SCALAR);
+        if(page != null) return page[(int)(c & PageCache.PAGE_MASK)];
+        final ByteBuffer b = ByteBuffer.allocate(cs.size);
+        handle.readFully(b,i);
+        return decode(b.array(),0,big);
+    }
+    /**
+     * Decodes a page for the {@linkplain PageCache}. The last page of the file
+     * may be shorter than the others.
+     * 
+     * @param page The index of the page in the file.
+     */
+    char[] page(final long page) throws IOException {
+        final int scalar = cs.size;
+        final ByteBuffer buf = ByteBuffer.allocate(PageCache.PAGE_SIZE * scalar);
+        final int n = handle.read(buf,(page << PageCache.PAGE_SCALAR) * scalar) / scalar;
+        final char[] out = new char[n];
+        cs.decode(buf.flip().limit(n * scalar),out,0,n);
+        return out;
     }
-    char read() throws IOException {return read(data,big);}
     @Override
     public char charAt(final int index) throws IndexOutOfBoundsException,UncheckedIOException {
         return charAt((long)index);
     }
     @Override
     public char charAt(final long index) throws IndexOutOfBoundsException,UncheckedIOException {
-        try {data.seek(idx(index)); return read();}
+        try {return read(idx(index));}
         catch(final IOException e) {throw ioe(e);}
     }
     
@@ -192,11 +471,51 @@ class FileSequence implements Sequence {
                 .formatted(end / cs.size,start / cs.size)
             );
         return start != end? start != this.start || end != this.end
-                ? new FileSequence(file,start,end,end - start,mutability,suffix,cs)
+                ? share(start,end)
                 : shallowCopy()
                 : EMPTY;
               
     }
+    /**
+     * Creates a new sequence which views the specified range of the same file.
+     * Extending types should override this so that views keep the same backing.
+     * 
+     * @param start The index of the first byte (inclusive).
+     * @param end   The index of the last byte (exclusive).
+     */
+    FileSequence share(final long start,final long end) throws UncheckedIOException {
+        final FileSequence out = new FileSequence(retain(),file,start,end,end - start,mutability,suffix,cs);
+        out.block = block;
+        return out;
+    }
+    /**
+     * @return The handle of this sequence, retained for a new view or iterator,
+     *         or <code>null</code> if this sequence does not read from a handle.
+     *         If this sequence has already been closed, the file is opened again.
+     */
+    Handle retain() throws UncheckedIOException {
+        if(handle == null) return null;
+        return handle.retain()? handle : open(file,mutability);
+    }
+    /**
+     * Extending types which read from something other than a handle should
+     * override this so that their iterators keep it open after this sequence is
+     * closed.
+     * 
+     * @return An action which releases whatever was retained for a new
+     *         iterator, or <code>null</code> if nothing other than the handle
+     *         needs to be retained.
+     */
+    Runnable retainBacking() {return null;}
+    /**
+     * @return The size of the read-ahead buffer of the iterators, in bytes. A
+     *         value equal to the size of a character disables read-ahead.
+     */
+    int readBlock() {return block;}
+    /**Decodes the character which starts at the specified index of the buffer.*/
+    static char decode(final byte[] buf,final int i,final boolean big) {
+        return big? (char)(buf[i] << 8 | buf[i + 1] & 0xFF) : (char)(buf[i] & 0xFF);
+    }
     
     /**
      * A {@linkplain SimpleSequenceIterator} view of the characters stored in a
@@ -206,24 +525,35 @@ class FileSequence implements Sequence {
         final Cleanable cleanable;
         final fscleaner sfsc;
         // Indices are measured in characters.
-        final RandomAccessFile data;
+        final Handle handle;
         final long start,end;
         long cursor = 0L;
         final boolean big;
+        final int scalar;
+        /**
+         * Read-ahead buffer. The bytes in the range <code>[pos,lim)</code> are the
+         * characters which directly follow the cursor.
+         */
+        final byte[] buf;
+        final ByteBuffer bb;
+        int pos = 0,lim = 0;
         
         SFSI(final FileSequence parent) throws UncheckedIOException {
-            // Create new view of the data to prevent interference.
-            try {
-                cleanable = CleaningUtil.register(
-                    this,
-                    sfsc = new fscleaner(
-                        data = new RandomAccessFile(parent.file,"r")
-                    )
-                );
-                data.seek(start = parent.start);
-            } catch(IOException|SecurityException e) {throw ioe(e);}
+            cleanable = CleaningUtil.register(this,sfsc = new fscleaner(handle = parent.retain(),parent.retainBacking()));
+            start = parent.start;
             end = parent.size();
             big = parent.big;
+            scalar = parent.cs.size;
+            bb = ByteBuffer.wrap(buf = new byte[parent.readBlock()]);
+        }
+        
+        /**Reads the next block of characters, stopping at the end of the sequence.*/
+        void fill() throws UncheckedIOException {
+            final int n = (int)min(buf.length,(end - cursor) * scalar);
+            pos = lim = 0;
+            try {handle.readFully(bb.clear().limit(n),start + cursor * scalar);}
+            catch(final IOException e) {throw ioe(e);}
+            lim = n;
         }
         
         @Override
@@ -242,8 +572,9 @@ class FileSequence implements Sequence {
                     "Cannot skip %d characters after index %d."
                     .formatted(count,cursor)
                 );
-            try {data.seek(start + (cursor += count) * (big? 2L : 1L));}
-            catch(final IOException e) {throw ioe(e);}
+            cursor += count;
+            if(count * scalar <= lim - pos) pos += (int)(count * scalar);
+            else pos = lim = 0;
             return this;
         }
         
@@ -255,27 +586,43 @@ class FileSequence implements Sequence {
         @Override
         public Character next() throws NoSuchElementException,UncheckedIOException {
             if(!hasNext()) throw new NoSuchElementException();
+            if(pos == lim) fill();
             ++cursor;
-            try {return big? data.readChar() : (char)data.read();}
-            catch(final IOException e) {throw ioe(e);}
+            final char c = decode(buf,pos,big);
+            pos += scalar;
+            return c;
+        }
+        @Override
+        public int nextChar() throws UncheckedIOException {
+            if(!hasNext()) return EOS;
+            if(pos == lim) fill();
+            ++cursor;
+            final char c = decode(buf,pos,big);
+            pos += scalar;
+            return c;
         }
         
         @Override
         public void forEachRemaining(final Consumer<? super Character> action) throws UncheckedIOException {
             if(action == null) return;
-            try {
-                if(big) {
-                    while(cursor < end) {
-                        action.accept(data.readChar());
-                        ++cursor;
-                    }
-                } else {
-                    while(cursor < end) {
-                        action.accept((char)data.read());
-                        ++cursor;
-                    }
-                }
-            } catch(final IOException e) {throw ioe(e);}
+            while(cursor < end) {
+                if(pos == lim) fill();
+                do {
+                    action.accept(decode(buf,pos,big));
+                    ++cursor;
+                } while((pos += scalar) != lim);
+            }
+        }
+        @Override
+        public void forEachChar(final CharConsumer action) throws UncheckedIOException {
+            if(action == null) return;
+            while(cursor < end) {
+                if(pos == lim) fill();
+                do {
+                    action.accept(decode(buf,pos,big));
+                    ++cursor;
+                } while((pos += scalar) != lim);
+            }
         }
         
         @Override
@@ -296,7 +643,7 @@ class FileSequence implements Sequence {
         final String suffix;
         final long start,end,lastIdx;
         final File file;
-        final RandomAccessFile data;
+        final Handle handle;
         final FixedSizeCharset cs;
         final int scalar;
         final boolean big;
@@ -305,16 +652,7 @@ class FileSequence implements Sequence {
         
         FSI(final long begin,final long end,final FileSequence fs)
             throws UncheckedIOException {
-            // Create new view of the data to prevent interference.
-            try {
-                cleanable = CleaningUtil.register(
-                    this,
-                    fsic = new fscleaner(
-                        data = new RandomAccessFile(fs.file,fs.mutability.mode)
-                    )
-                );
-            }
-            catch(FileNotFoundException|SecurityException e) {throw ioe(e);}
+            cleanable = CleaningUtil.register(this,fsic = new fscleaner(handle = fs.retain(),fs.retainBacking()));
             cursor = mark = begin;
             lastIdx = end;
             this.parent = fs;
@@ -325,11 +663,49 @@ class FileSequence implements Sequence {
             cs = fs.cs;
             scalar = fs.cs.size;
             big = fs.big;
+            bb = ByteBuffer.wrap(buf = new byte[fs.readBlock()]);
         }
         
+        /**
+         * Read-ahead buffer which holds <code>bufLen</code> bytes starting at the
+         * byte index <code>bufStart</code>.
+         */
+        final byte[] buf;
+        final ByteBuffer bb;
+        long bufStart = 0L;
+        int bufLen = 0;
+        /**
+         * Reads the block which contains the specified byte index, clipped to the
+         * range of the sequence. Since blocks are aligned, scanning in either
+         * direction reads each block at most once.
+         */
+        void fill(final long i) throws IOException {
+            final long a = i & -(long)buf.length,
+                       b = max(a,start);
+            final int n = (int)(min(a + buf.length,end) - b);
+            bufLen = 0;
+            handle.readFully(bb.clear().limit(n),b);
+            bufStart = b;
+            bufLen = n;
+        }
         char get(final long i) throws UncheckedIOException {
-            try {data.seek(i); return big? data.readChar() : (char)data.read();} 
+            final long o = i - bufStart;
+            if(o < 0L || bufLen <= o) {
+                try {fill(i);}
+                catch(final IOException e) {throw ioe(e);}
+                return decode(buf,(int)(i - bufStart),big);
+            }
+            return decode(buf,(int)o,big);
+        }
+        void put(final long i,final char c) throws UncheckedIOException {
+            try {handle.writeFully(ByteBuffer.allocate(2).putChar(0,c),i);}
             catch(final IOException e) {throw ioe(e);}
+            PageCache.update(file,scalar,i / scalar,new char[] {c},0,1);
+            final long o = i - bufStart;
+            if(0L <= o && o < bufLen) {
+                buf[(int)o] = (byte)(c >>> 8);
+                buf[(int)o + 1] = (byte)c;
+            }
         }
         abstract void increment();
         abstract long offset(long i);
@@ -351,6 +727,10 @@ class FileSequence implements Sequence {
         public Character peek(long offset) throws UncheckedIOException {
             return oob(offset = offset(offset))? null : get(offset);
         }
+        @Override
+        public int peekChar() throws UncheckedIOException {
+            return hasNext()? get(cursor) : EOS;
+        }
         
         @Override public boolean hasNext() {return cursor != lastIdx;}
         @Override
@@ -362,6 +742,23 @@ class FileSequence implements Sequence {
             }
             return null;
         }
+        @Override
+        public int nextChar() throws UncheckedIOException {
+            if(hasNext()) {
+                final char c = get(cursor);
+                increment();
+                return c;
+            }
+            return EOS;
+        }
+        @Override
+        public void forEachChar(final CharConsumer action) throws UncheckedIOException {
+            if(action == null) return;
+            while(hasNext()) {
+                action.accept(get(cursor));
+                increment();
+            }
+        }
         
         abstract Character iSWS(long limit) throws UncheckedIOException;
         @Override
@@ -474,7 +871,7 @@ class FileSequence implements Sequence {
                     .formatted(a / scalar,b / scalar)
                 );
             return a != b? a != start || b != end
-                    ? new FileSequence(file,a,b,b - a,parent.mutability,suffix,cs)
+                    ? parent.share(a,b)
                     : parent.shallowCopy()
                     : EMPTY;
         }
@@ -483,13 +880,8 @@ class FileSequence implements Sequence {
         abstract long strLength();
         @Override
         public String toString() throws UncheckedIOException {
-            try{
-                return cs.stringDecode(
-                    (int)min(strLength() / scalar,Integer.MAX_VALUE),
-                    data,
-                    strBegin() / scalar
-                );
-            } catch(final IOException e) {throw ioe(e);}
+            try {return parent.string(strBegin(),strLength());}
+            catch(final IOException e) {throw ioe(e);}
         }
         
         @Override
@@ -511,23 +903,13 @@ class FileSequence implements Sequence {
         @Override long skipidx(final long i) {return min(i * scalar,end);}
         
         @Override
-        Character iSWS(long limit) throws UncheckedIOException {
+        Character iSWS(final long limit) throws UncheckedIOException {
             // This method trusts that the cursor never underflows via jump.
             if(cursor < limit) {
-                try {
-                    data.seek(cursor);
-                    if(big) {
-                        do {
-                            final char c = data.readChar();
-                            if(!isWhitespace(c)) return c;
-                        } while((cursor += 2L) != limit);
-                    } else {
-                        do {
-                            final char c = (char)data.read();
-                            if(!isWhitespace(c)) return c;
-                        } while(++cursor != limit);
-                    }
-                } catch(final IOException e) {throw ioe(e);}
+                do {
+                    final char c = get(cursor);
+                    if(!isWhitespace(c)) return c;
+                } while((cursor += scalar) != limit);
             }
             return null;
         }
@@ -535,14 +917,11 @@ class FileSequence implements Sequence {
         Character iPNWS(final long limit) throws UncheckedIOException {
             // This method trusts that the cursor never underflows via jump.
             if(cursor < limit) {
-                try {
-                    data.seek(cursor);
-                    final char c = big? data.readChar() : (char)data.read();
-                    return isWhitespace(c)? iPNNWS(limit)
-                                          // The cast keeps the return value of iPNNWS from
-                                          // auto-unboxing, which allows it to return null.
-                                          : (Character)c;
-                } catch(final IOException e) {throw ioe(e);}
+                final char c = get(cursor);
+                return isWhitespace(c)? iPNNWS(limit)
+                                      // The cast keeps the return value of iPNNWS from
+                                      // auto-unboxing, which allows it to return null.
+                                      : (Character)c;
             }
             return null;
         }
@@ -551,20 +930,10 @@ class FileSequence implements Sequence {
             // This method trusts that the cursor never underflows via jump.
             long tmp = cursor + scalar;
             if(tmp < limit) {
-                try {
-                    data.seek(tmp);
-                    if(big) {
-                        do {
-                            final char c = data.readChar();
-                            if(!isWhitespace(c)) return c;
-                        } while((tmp += 2L) != limit);
-                    } else {
-                        do {
-                            final char c = (char)data.read();
-                            if(!isWhitespace(c)) return c;
-                        } while(++tmp != limit);
-                    }
-                } catch(final IOException e) {throw ioe(e);}
+                do {
+                    final char c = get(tmp);
+                    if(!isWhitespace(c)) return c;
+                } while((tmp += scalar) != limit);
             }
             return null;
         }
@@ -572,40 +941,21 @@ class FileSequence implements Sequence {
         Character iNNWS(final long limit) throws UncheckedIOException {
             // This method trusts that the cursor never underflows via jump.
             if(cursor < limit && (cursor += scalar) != limit) {
-                try {
-                    data.seek(cursor);
-                    if(big) {
-                        do {
-                            final char c = data.readChar();
-                            if(!isWhitespace(c)) return c;
-                        } while((cursor += 2L) != limit);
-                    } else {
-                        do {
-                            final char c = (char)data.read();
-                            if(!isWhitespace(c)) return c;
-                        } while(++cursor != limit);
-                    }
-                } catch(final IOException e) {throw ioe(e);}
+                do {
+                    final char c = get(cursor);
+                    if(!isWhitespace(c)) return c;
+                } while((cursor += scalar) != limit);
             }
             return null;
         }
         @Override
         boolean iFind(final long limit,final char c) throws UncheckedIOException {
             if(cursor < limit) {
-                try {
-                    data.seek(cursor);
-                    if(big) {
-                        do {
-                            cursor += 2L;
-                            if(data.readChar() == c) return true;
-                        } while(cursor != limit);
-                    } else {
-                        do {
-                            ++cursor;
-                            if(data.read() == c) return true;
-                        } while(cursor != limit);
-                    }
-                } catch(final IOException e) {throw ioe(e);}
+                do {
+                    final char x = get(cursor);
+                    cursor += scalar;
+                    if(x == c) return true;
+                } while(cursor != limit);
             }
             return false;
         }
@@ -642,21 +992,10 @@ class FileSequence implements Sequence {
         Character iSWS(final long limit) throws UncheckedIOException {
             // This method trusts that the cursor never underflows via jump.
             if(cursor > limit) {
-                try {
-                    if(big) {
-                        do {
-                            data.seek(cursor);
-                            final char c = data.readChar();
-                            if(!isWhitespace(c)) return c;
-                        } while((cursor -= 2L) != limit);
-                    } else {
-                        do {
-                            data.seek(cursor);
-                            final char c = (char)data.read();
-                            if(!isWhitespace(c)) return c;
-                        } while(--cursor != limit);
-                    }
-                } catch(final IOException e) {throw ioe(e);}
+                do {
+                    final char c = get(cursor);
+                    if(!isWhitespace(c)) return c;
+                } while((cursor -= scalar) != limit);
             }
             return null;
         }
@@ -664,14 +1003,11 @@ class FileSequence implements Sequence {
         Character iPNWS(final long limit) throws UncheckedIOException {
             // This method trusts that the cursor never underflows via jump.
             if(cursor > limit) {
-                try {
-                    data.seek(cursor);
-                    final char c = big? data.readChar() : (char)data.read();
-                    return isWhitespace(c)? iPNNWS(limit)
-                                          // The cast keeps the return value of iPNNWS from
-                                          // auto-unboxing, which allows it to return null.
-                                          : (Character)c;
-                } catch(final IOException e) {throw ioe(e);}
+                final char c = get(cursor);
+                return isWhitespace(c)? iPNNWS(limit)
+                                      // The cast keeps the return value of iPNNWS from
+                                      // auto-unboxing, which allows it to return null.
+                                      : (Character)c;
             }
             return null;
         }
@@ -680,21 +1016,10 @@ class FileSequence implements Sequence {
             // This method trusts that the cursor never underflows via jump.
             long tmp = cursor - scalar;
             if(tmp > limit) {
-                try {
-                    if(big) {
-                        do {
-                            data.seek(tmp);
-                            final char c = data.readChar();
-                            if(!isWhitespace(c)) return c;
-                        } while((tmp -= 2L) != limit);
-                    } else {
-                        do {
-                            data.seek(tmp);
-                            final char c = (char)data.read();
-                            if(!isWhitespace(c)) return c;
-                        } while(--tmp != limit);
-                    }
-                } catch(final IOException e) {throw ioe(e);}
+                do {
+                    final char c = get(tmp);
+                    if(!isWhitespace(c)) return c;
+                } while((tmp -= scalar) != limit);
             }
             return null;
         }
@@ -702,41 +1027,21 @@ class FileSequence implements Sequence {
         Character iNNWS(final long limit) throws UncheckedIOException {
             // This method trusts that the cursor never underflows via jump.
             if(cursor > limit && (cursor -= scalar) != limit) {
-                try {
-                    if(big) {
-                        do {
-                            data.seek(cursor);
-                            final char c = data.readChar();
-                            if(!isWhitespace(c)) return c;
-                        } while((cursor -= 2L) != limit);
-                    } else {
-                        do {
-                            data.seek(cursor);
-                            final char c = (char)data.read();
-                            if(!isWhitespace(c)) return c;
-                        } while(--cursor != limit);
-                    }
-                } catch(final IOException e) {throw ioe(e);}
+                do {
+                    final char c = get(cursor);
+                    if(!isWhitespace(c)) return c;
+                } while((cursor -= scalar) != limit);
             }
             return null;
         }
         @Override
         boolean iFind(final long limit,final char c) throws UncheckedIOException {
             if(cursor > limit) {
-                try {
-                    if(big) {
-                        do {
-                            data.seek(cursor);
-                            cursor -= 2L;
-                            if(data.readChar() == c) return true;
-                        } while(cursor != limit);
-                    } else {
-                        do {
-                            data.seek(cursor--);
-                            if(data.read() == c) return true;
-                        } while(cursor != limit);
-                    }
-                } catch(final IOException e) {throw ioe(e);}
+                do {
+                    final char x = get(cursor);
+                    cursor -= scalar;
+                    if(x == c) return true;
+                } while(cursor != limit);
             }
             return false;
         }
@@ -775,9 +1080,21 @@ class FileSequence implements Sequence {
         if(fsc.e != null) throw ioe(fsc.e);
     }
     
+    /**
+     * @param begin  The index of the first byte (inclusive).
+     * @param length The number of bytes to decode. This is clipped to the maximum
+     *               size of a string.
+     * 
+     * @return A string holding the characters in the specified range.
+     */
+    String string(final long begin,final long length) throws IOException {
+        final char[] out = new char[(int)min(Integer.MAX_VALUE,length / cs.size)];
+        copy(begin,out,0,out.length);
+        return new String(out);
+    }
     @Override
     public String toString() throws UncheckedIOException {
-        try {return cs.stringDecode((int)min(Integer.MAX_VALUE,size()),data,start);}
+        try {return string(start,length);}
         catch(final IOException e) {throw ioe(e);}
     }
     
@@ -792,17 +1109,184 @@ class FileSequence implements Sequence {
                     "Cannot copy sequence of size %d to an array of size %d at index %d."
                     .formatted(size,arr.length,offs)
                 );
-            try {
-                data.seek(start);
-                final int l = (int)(offs + size);
-                if(big)
-                    for(int i = offs;i < l;++i) arr[i] = data.readChar();
-                else
-                    for(int i = offs;i < l;++i) arr[i] = (char)data.read();
-            } catch(final IOException e) {throw ioe(e);}
+            try {copy(start,arr,offs,(int)size);}
+            catch(final IOException e) {throw ioe(e);}
         }
         return this;
     }
+    @Override
+    public int read(final long srcStart,final char[] dst,final int off,final int len)
+                    throws IndexOutOfBoundsException,UncheckedIOException {
+        Objects.checkFromIndexSize(off,len,dst.length);
+        final long s = ssidx(srcStart);
+        final int n = (int)min(len,(end - s) / cs.size);
+        try {copy(s,dst,off,n);}
+        catch(final IOException e) {throw ioe(e);}
+        return n;
+    }
+    /**The maximum number of bytes read at once by {@linkplain #copy}.*/
+    static final int COPY_BLOCK = 1 << 20;
+    /**
+     * Reads the encoded characters which start at the byte index into the
+     * remaining bytes of the buffer, without any bounds checks.
+     * 
+     * @return <code>false</code> iff the bytes of the file are not the characters
+     *         in {@linkplain #cs}, in which case nothing is read.
+     */
+    boolean bytes(final long begin,final ByteBuffer dst) throws IOException {
+        handle.readFully(dst,begin);
+        return true;
+    }
+    /**
+     * Copies characters from the file to the array without any bounds checks.
+     * The bytes are read with positional reads, so the file pointer is not moved.
+     * 
+     * @param begin  The index of the first byte (inclusive).
+     * @param arr    The destination array.
+     * @param offset The index in the array of the first character.
+     * @param count  The number of characters to copy.
+     */
+    void copy(long begin,final char[] arr,int offset,int count) throws IOException {
+        final int scalar = cs.size;
+        final ByteBuffer buf = ByteBuffer.allocate((int)min((long)count * scalar,COPY_BLOCK));
+        while(count != 0) {
+            final int n = min(count,buf.capacity() / scalar);
+            handle.readFully(buf.clear().limit(n * scalar),begin);
+            cs.decode(buf.flip(),arr,offset,n);
+            begin += (long)n * scalar;
+            offset += n;
+            count -= n;
+        }
+    }
+    
+    /**
+     * Copies characters from the file to an array with an
+     * {@linkplain AsynchronousFileChannel}, reading at most
+     * {@linkplain #COPY_BLOCK} bytes at a time. The handle is retained until the
+     * copy completes, so the sequence may be closed before then.
+     */
+    private static final class AsyncCopy implements CompletionHandler<Integer,Void> {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        final Handle handle;
+        final FixedSizeCharset cs;
+        final ByteBuffer buf;
+        final char[] arr;
+        long pos;
+        int offset,count;
+        
+        AsyncCopy(final Handle handle,final FixedSizeCharset cs,final long begin,
+                  final char[] arr,final int offset,final int count) {
+            this.handle = handle;
+            this.cs = cs;
+            buf = ByteBuffer.allocate((int)min((long)count * cs.size,COPY_BLOCK));
+            this.arr = arr;
+            pos = begin;
+            this.offset = offset;
+            this.count = count;
+        }
+        
+        /**Reads the remaining bytes of the current block.*/
+        void read() {
+            try {handle.async().read(buf,pos,null,this);}
+            catch(IOException|RuntimeException e) {failed(e);}
+        }
+        /**Starts to read the next block.*/
+        void next() {
+            buf.clear().limit(min(count,buf.capacity() / cs.size) * cs.size);
+            read();
+        }
+        @Override
+        public void completed(final Integer n,final Void v) {
+            if(n < 0) {failed(new EOFException()); return;}
+            pos += n;
+            if(buf.hasRemaining()) {read(); return;}
+            final int c = buf.position() / cs.size;
+            cs.decode(buf.flip(),arr,offset,c);
+            offset += c;
+            if((count -= c) != 0) {next(); return;}
+            try {handle.release();}
+            catch(final IOException e) {future.completeExceptionally(ioe(e)); return;}
+            future.complete(null);
+        }
+        @Override
+        public void failed(final Throwable t,final Void v) {failed(t);}
+        void failed(final Throwable t) {
+            try {handle.release();}
+            catch(final IOException e) {t.addSuppressed(e);}
+            future.completeExceptionally(t instanceof IOException? ioe((IOException)t) : t);
+        }
+    }
+    /**
+     * @return <code>true</code> iff the asynchronous methods read the file with
+     *         an {@linkplain AsynchronousFileChannel}. Otherwise, they read it on
+     *         the calling thread.
+     */
+    boolean async() {return handle != null && width() != 0;}
+    /**
+     * Same as {@linkplain #copy}, except the characters are read with an
+     * {@linkplain AsynchronousFileChannel}.
+     * 
+     * @return A future which completes once the characters have been copied.
+     */
+    CompletableFuture<Void> copyAsync(final long begin,final char[] arr,final int offset,final int count) {
+        if(count == 0) return CompletableFuture.completedFuture(null);
+        final AsyncCopy c;
+        try {c = new AsyncCopy(retain(),cs,begin,arr,offset,count);}
+        catch(final UncheckedIOException e) {return CompletableFuture.failedFuture(e);}
+        c.next();
+        return c.future;
+    }
+    @Override
+    public CompletableFuture<Character> charAtAsync(final long index) {
+        if(!async()) return Sequence.super.charAtAsync(index);
+        final long i;
+        try {
+            i = idx(index);
+            final long c = i / cs.size;
+            final char[] page = PageCache.peek(this,c >>> PageCache.PAGE_SCALAR);
+            if(page != null) return CompletableFuture.completedFuture(page[(int)(c & PageCache.PAGE_MASK)]);
+        } catch(final RuntimeException e) {return CompletableFuture.failedFuture(e);}
+        final char[] out = new char[1];
+        return copyAsync(i,out,0,1).thenApply(v -> out[0]);
+    }
+    @Override
+    public CompletableFuture<Integer> readAsync(final long srcStart,final CharBuffer dst) {
+        if(!async()) return Sequence.super.readAsync(srcStart,dst);
+        final int p = dst.position(),n;
+        final long s;
+        try {
+            if(dst.isReadOnly()) throw new ReadOnlyBufferException();
+            n = (int)min(dst.remaining(),(end - (s = ssidx(srcStart))) / cs.size);
+        } catch(final RuntimeException e) {return CompletableFuture.failedFuture(e);}
+        if(dst.hasArray())
+            return copyAsync(s,dst.array(),dst.arrayOffset() + p,n).thenApply(v -> {
+                dst.position(p + n);
+                return n;
+            });
+        final char[] tmp = new char[n];
+        return copyAsync(s,tmp,0,n).thenApply(v -> {
+            dst.put(tmp);
+            return n;
+        });
+    }
+    @Override
+    public CompletableFuture<String> toStringAsync() {
+        if(!async()) return Sequence.super.toStringAsync();
+        final char[] out = new char[(int)min(Integer.MAX_VALUE,length / cs.size)];
+        return copyAsync(start,out,0,out.length).thenApply(v -> new String(out));
+    }
+    @Override
+    public CompletableFuture<Sequence> copyToAsync(final char[] arr,final int offset) {
+        if(!async()) return Sequence.super.copyToAsync(arr,offset);
+        final long size = size();
+        final int offs = offset < 0? offset + arr.length : offset;
+        if(size != 0L && (arr.length <= offs || offs < 0 || offs + size > arr.length))
+            return CompletableFuture.failedFuture(new IllegalArgumentException(
+                "Cannot copy sequence of size %d to an array of size %d at index %d."
+                .formatted(size,arr.length,offs)
+            ));
+        return copyAsync(start,arr,offs,(int)size).thenApply(v -> this);
+    }
     
     File tmpFile(final Mutability mut) throws UncheckedIOException {
         try {
@@ -815,35 +1299,60 @@ class FileSequence implements Sequence {
             return cpy;
         } catch(IOException|SecurityException e) {throw ioe(e);}
     }
-    @Override
-    public MutableSequence mutableCopy() throws UncheckedIOException {
+    /**
+     * Writes the characters of this sequence to a new file with two bytes per
+     * character, reading them through {@linkplain #copy(long,char[],int,int)}.
+     * Single-byte characters are widened a block at a time instead, when their
+     * bytes can be read directly.
+     */
+    MutableSequence widenedCopy() throws UncheckedIOException {
         final File nf = tmpFile(Mutability.MUTABLE);
-        try {
-            FixedSizeCharset.transfer(file,cs,nf,MutableFileSequence.MUTABLE_CS);
-            return new MutableFileSequence(nf,start,end,length,suffix);
-        } catch(UncheckedIOException|IOException|SecurityException e) {
+        final long size = size();
+        try(FileChannel out = FileChannel.open(nf.toPath(),WRITE)) {
+            final int block = (int)min(size,COPY_BLOCK >>> 1);
+            final ByteBuffer buf = ByteBuffer.allocate(block << 1);
+            ByteBuffer narrow = cs.size == 1? ByteBuffer.allocate(block) : null;
+            char[] chars = null;
+            for(long i = 0L;i < size;) {
+                final int n = (int)min(block,size - i);
+                if(narrow != null && bytes(start + i,narrow.clear().limit(n)))
+                    FixedSizeCharset.widen(narrow.array(),0,buf.array(),0,n);
+                else {
+                    if(chars == null) {
+                        chars = new char[block];
+                        narrow = null;
+                    }
+                    copy(start + i * cs.size,chars,0,n);
+                    buf.clear().asCharBuffer().put(chars,0,n);
+                }
+                for(buf.clear().limit(n << 1);buf.hasRemaining();) out.write(buf);
+                i += n;
+            }
+        } catch(IOException|SecurityException e) {
             try {nf.delete();}
             catch(final SecurityException e1) {}
             throw ioe(e);
         }
+        return new MutableFileSequence(nf,0L,size << 1,size << 1,suffix);
     }
+    /**Only the characters of this sequence are copied, not the rest of the file.*/
     @Override
-    public Sequence immutableCopy() throws UncheckedIOException {
-        final File nf = tmpFile(Mutability.IMMUTABLE);
-        // Immutable file sequence is already in it's minimal form, don't need to re-encode.
-        try(BufferedInputStream I = new BufferedInputStream(new FileInputStream(file));
-            BufferedOutputStream O = new BufferedOutputStream(new FileOutputStream(nf))) {
-            I.transferTo(O);
-            return new FileSequence(nf,start,end,length,Mutability.IMMUTABLE,suffix,cs);
-        } catch(UncheckedIOException|IOException|SecurityException e) {
+    public MutableSequence mutableCopy() throws UncheckedIOException {
+        if(handle == null || cs.size != MutableFileSequence.MUTABLE_CS.size) return widenedCopy();
+        // The bytes are already in the mutable form, so the kernel can copy them.
+        final File nf = tmpFile(Mutability.MUTABLE);
+        try(FileChannel out = FileChannel.open(nf.toPath(),WRITE)) {
+            handle.transferTo(start,end,out);
+        } catch(IOException|SecurityException e) {
             try {nf.delete();}
             catch(final SecurityException e1) {}
             throw ioe(e);
         }
+        return new MutableFileSequence(nf,0L,length,length,suffix);
     }
+    /**The file of an immutable sequence never changes, so the copy shares it.*/
+    @Override public Sequence immutableCopy() throws UncheckedIOException {return share(start,end);}
     @Override public boolean closeIsShared() {return true;}
     @Override
-    public Sequence shallowCopy() throws UncheckedIOException {
-        return new FileSequence(file,start,end,length,mutability,suffix,cs);
-    }
+    public Sequence shallowCopy() throws UncheckedIOException {return share(start,end);}
 }
\ No newline at end of file
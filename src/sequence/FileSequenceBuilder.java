@@ -2,6 +2,8 @@ package sequence;
 
 import static sequence.Sequence.EMPTY;
 
+import java.util.concurrent.ForkJoinPool;
+
 import java.io.File;
 import java.io.IOException;
 import java.io.UncheckedIOException;
@@ -24,6 +26,14 @@ public class FileSequenceBuilder implements SequenceBuilder {
     private File data = null;
     private Long start = null,end = null,length = null;
     private Charset cs = null;
+    boolean mapped = false;
+    private Integer block = null;
+    private Integer parallelism = null;
+    private boolean copy = false;
+    private boolean indexed = false;
+    private boolean lazy = false;
+    private File cache = null;
+    private Long cacheLimit = null;
     
     /**
      * Sets the data of this sequence to hold the contents of the specified file.
@@ -126,41 +136,215 @@ public class FileSequenceBuilder implements SequenceBuilder {
         this.cs = cs;
         return this;
     }
+    /**
+     * Sets whether the sequence should read its characters from a memory-mapped
+     * view of the transcoded file instead of seeking a file handle. This avoids a
+     * system call per character. On JDK 22 and newer, the mapping is released when
+     * the sequence and all of its views are closed; otherwise, it is only released
+     * once the sequence is garbage collected. This option is ignored by mutable
+     * sequences.
+     * 
+     * @return <code>this</code>
+     */
+    public FileSequenceBuilder mapped(final boolean mapped) {
+        this.mapped = mapped;
+        return this;
+    }
+    /**
+     * Sets the number of bytes which the iterators read from the file at once, or
+     * <code>null</code> to use the default value. The size must be a power of two
+     * no smaller than two. This option is ignored by mutable and memory-mapped
+     * sequences.
+     * 
+     * @return <code>this</code>
+     */
+    public FileSequenceBuilder blockSize(final Integer block) {
+        this.block = block;
+        return this;
+    }
+    
+    /**
+     * Sets the number of threads which decode the input file. Large inputs are
+     * split into chunks which are decoded in parallel when the charset allows it.
+     * A value of one or <code>null</code>, the default, decodes the file on the
+     * calling thread.
+     * 
+     * @return <code>this</code>
+     */
+    public FileSequenceBuilder parallelism(final Integer parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+    
+    /**
+     * Sets whether the input is always copied to a temporary file. By default,
+     * immutable sequences read an input which is encoded with ISO-8859-1,
+     * US-ASCII, or UTF-16BE directly, since it already has a fixed size per
+     * character. Such a sequence reflects later changes to the input file, and
+     * its characters are not validated, so US-ASCII input may contain bytes
+     * above <code>0x7F</code> and UTF-16BE input may contain unpaired
+     * surrogates. This option is ignored by mutable sequences, which always
+     * copy their input.
+     * 
+     * @return <code>this</code>
+     */
+    public FileSequenceBuilder copy(final boolean copy) {
+        this.copy = copy;
+        return this;
+    }
+    
+    /**
+     * Sets whether a UTF-8 input is read in place instead of being transcoded.
+     * The builder reads the input once to check it and to record the byte offset
+     * of every 1024th character, and the sequence decodes the characters at an
+     * index forward from the nearest of these checkpoints. This avoids a copy of
+     * the input, which would take two bytes per character as soon as it holds
+     * one character above <code>\u00FF</code>, at the cost of slower random
+     * access when the {@linkplain PageCache} misses. Like other inputs which are
+     * read directly, later changes to the file are not detected. This option is
+     * ignored by mutable sequences, for other charsets, and when
+     * {@linkplain #copy(boolean)} is set; it takes precedence over
+     * {@linkplain #mapped(boolean)} and {@linkplain #cache(File)}.
+     * 
+     * @return <code>this</code>
+     */
+    public FileSequenceBuilder indexed(final boolean indexed) {
+        this.indexed = indexed;
+        return this;
+    }
+    
+    /**
+     * Sets whether {@linkplain #build()} returns before the input is transcoded.
+     * The input is then transcoded by a background thread into a file which
+     * holds two bytes per character. Reads of characters which were already
+     * written proceed immediately, while reads of later characters wait for
+     * them. The size of the sequence, negative indices, the iterators and the
+     * bulk operations on the whole sequence wait for the transcoding to finish,
+     * and an invalid input is only reported by the reads which wait for it.
+     * This option is ignored by mutable, memory-mapped, cached and directly read
+     * sequences, and when a range is set.
+     * 
+     * @return <code>this</code>
+     */
+    public FileSequenceBuilder lazy(final boolean lazy) {
+        this.lazy = lazy;
+        return this;
+    }
+    
+    /**
+     * Sets the directory of a persistent cache of transcoded inputs, or
+     * <code>null</code> to disable the cache. When the cache holds an entry for
+     * the input which matches its path, size, modification time and charset, the
+     * entry is read instead of transcoding the input again; otherwise, a new
+     * entry is added. This option is ignored by mutable sequences and by inputs
+     * which are read directly.
+     * 
+     * @return <code>this</code>
+     * 
+     * @see #cacheLimit(Long)
+     */
+    public FileSequenceBuilder cache(final File cache) {
+        this.cache = cache;
+        return this;
+    }
+    /**
+     * Sets the directory of a persistent cache of transcoded inputs.
+     * 
+     * @return <code>this</code>
+     * 
+     * @see #cache(File)
+     */
+    public FileSequenceBuilder cache(final Path cache) {
+        this.cache = cache == null? null : cache.toFile();
+        return this;
+    }
+    /**
+     * Sets the directory of a persistent cache of transcoded inputs.
+     * 
+     * @return <code>this</code>
+     * 
+     * @see #cache(File)
+     */
+    public FileSequenceBuilder cache(final String cache) {
+        this.cache = cache == null? null : new File(cache);
+        return this;
+    }
+    /**
+     * Sets the maximum number of bytes in the cache directory, or
+     * <code>null</code> to use the default of 4GB. When a new entry exceeds the
+     * limit, the least recently used entries are deleted.
+     * 
+     * @return <code>this</code>
+     */
+    public FileSequenceBuilder cacheLimit(final Long cacheLimit) {
+        this.cacheLimit = cacheLimit;
+        return this;
+    }
     
-    FileSequence construct(final File data,
+    /**@return The mutability of the sequences created by this builder.*/
+    Mutability mutability() {return Mutability.IMMUTABLE;}
+    /**
+     * @return The fixed-size charset whose encoding is identical to that of the
+     *         input file, which lets the sequence read it without a copy, or
+     *         <code>null</code> if the file must be transcoded.
+     */
+    FixedSizeCharset direct(final File data,final Charset cs) {
+        if(cs.equals(StandardCharsets.ISO_8859_1) || cs.equals(StandardCharsets.US_ASCII))
+            return FixedSizeCharset.Fixed_1;
+        // Like the decoder, this keeps a byte order mark as a character.
+        if(cs.equals(StandardCharsets.UTF_16BE) && (data.length() & 1L) == 0L)
+            return FixedSizeCharset.Fixed_2;
+        return null;
+    }
+    /**@return Whether the input is read in place through a checkpoint index.*/
+    boolean utf8(final Charset cs) {
+        return indexed && !copy && cs.equals(StandardCharsets.UTF_8);
+    }
+    /**
+     * Writes the characters of the input file to the temporary file using the
+     * fixed-size charset read by the sequence.
+     * 
+     * @param pool The pool which decodes the chunks of the file, or
+     *             <code>null</code> to decode it on the calling thread.
+     * 
+     * @return The charset of the temporary file.
+     */
+    FixedSizeCharset transcode(final File data,final File tmp,final Charset cs,
+                               final ForkJoinPool pool)
+                               throws IOException {
+        return FixedSizeCharset.transfer(data,tmp,cs,pool);
+    }
+    /**
+     * Creates a sequence which reads the temporary file. The indices are measured
+     * in characters.
+     */
+    FileSequence construct(final File tmp,
                            final long start,
                            final long end,
                            final long length,
-                           final Charset cs)
-                           throws IOException,SecurityException {
-        final Mutability mut = Mutability.IMMUTABLE;
-        final String suffix = data.getName();
-        // Make temporary file which contains characters with a fixed size.
-        final File tmp = Files.createTempFile(
-            FileSequence.TMP_DIR.toPath(),
-            null,
-            ".%s.%s".formatted(mut.toString(),suffix)
-        ).toFile();
-        tmp.deleteOnExit();
-        try {
-            final FixedSizeCharset fscs = FixedSizeCharset.transfer(data,tmp,cs);
-            
-            return new FileSequence(
+                           final String suffix,
+                           final FixedSizeCharset cs)
+                           throws UncheckedIOException {
+        if(mapped)
+            return MappedFileSequence.MAPPER.map(
                 tmp,
-                start * fscs.size,
-                end * fscs.size,
-                length * fscs.size,
-                mut,
+                start * cs.size,
+                end * cs.size,
+                length * cs.size,
                 suffix,
-                fscs
+                cs
             );
-        } catch(UncheckedIOException|IOException|SecurityException e) {
-            try {tmp.delete();}
-            catch(final SecurityException e1) {}
-            if(e instanceof UncheckedIOException)
-                throw ((UncheckedIOException)e).getCause();
-            throw e;
-        }
+        final FileSequence out = new FileSequence(
+            tmp,
+            start * cs.size,
+            end * cs.size,
+            length * cs.size,
+            Mutability.IMMUTABLE,
+            suffix,
+            cs
+        );
+        if(block != null) out.block = block;
+        return out;
     }
     /**
      * @throws IllegalArgumentException The indices are outside the input data or
@@ -169,37 +353,132 @@ public class FileSequenceBuilder implements SequenceBuilder {
     @Override
     public Sequence build() throws IllegalArgumentException,
                                    UncheckedIOException {
-        final long dataLength;
-        if(data == null || !data.isFile() || (dataLength = data.length()) == 0L) return EMPTY;
+        if(data == null || !data.isFile() || data.length() == 0L) return EMPTY;
         
-        if(start == null) start = 0L;
-        else if(dataLength < start || start < 0L && (start += dataLength) < 0L)
+        if(block != null && (block < 2 || Integer.bitCount(block) != 1))
             throw new IllegalArgumentException(
-                "Invalid start index %d for array of length %d."
-                .formatted(start,dataLength)
+                "Block size %d is not a power of two greater than one."
+                .formatted(block)
             );
         
-        if(end == null) {
-            if(length == null) length = (end = dataLength) - start;
-            else if(length < 0L || (end = length + start) > dataLength)
-                throw new IllegalArgumentException(
-                    "Length %d is invalid."
-                    .formatted(length)
-                );
-        } else {
-            if(dataLength < end || end < 0L && (end += dataLength) < 0L)
-                throw new IllegalArgumentException(
-                    "Invalid end index %d for array of length %d."
-                    .formatted(end,dataLength)
-                );
-            if((length = end - start) < 0L)
+        if(parallelism != null && parallelism < 1)
+            throw new IllegalArgumentException(
+                "Parallelism %d is not positive."
+                .formatted(parallelism)
+            );
+        
+        if(cacheLimit != null && cacheLimit < 0L)
+            throw new IllegalArgumentException(
+                "Cache limit %d is negative."
+                .formatted(cacheLimit)
+            );
+        
+        final String suffix = data.getName();
+        final Charset charset = cs == null? StandardCharsets.UTF_8 : cs;
+        final FixedSizeCharset direct = copy? null : direct(data,charset);
+        final boolean utf8 = utf8(charset);
+        final File dir = direct == null && !utf8 && mutability() == Mutability.IMMUTABLE? cache : null;
+        final boolean background = lazy && direct == null && !utf8 && dir == null && !mapped &&
+                                   mutability() == Mutability.IMMUTABLE &&
+                                   start == null && end == null && length == null;
+        // A temporary file which is deleted if the sequence cannot be built.
+        File tmp = null;
+        boolean keep = false;
+        try {
+            // The file which contains characters with a fixed size, or the UTF-8
+            // input if it is indexed.
+            final File store;
+            final FixedSizeCharset fscs;
+            // The indices are measured in decoded characters, not in bytes of the input.
+            final long dataLength;
+            final TranscodeCache.Source source = dir == null? null : TranscodeCache.Source.of(data,charset);
+            final TranscodeCache.Entry hit = dir == null? null : TranscodeCache.find(dir,source);
+            final Utf8FileSequence.Index index = utf8? Utf8FileSequence.Index.scan(data) : null;
+            if(index != null) {
+                store = data;
+                fscs = FixedSizeCharset.Fixed_1;
+                dataLength = index.chars;
+            } else if(direct != null) {
+                store = data;
+                dataLength = data.length() / (fscs = direct).size;
+            } else if(hit != null) {
+                store = hit.file();
+                dataLength = hit.length() / (fscs = hit.cs()).size;
+            } else {
+                if(dir != null) tmp = TranscodeCache.part(dir);
+                else {
+                    tmp = Files.createTempFile(
+                        FileSequence.TMP_DIR.toPath(),
+                        null,
+                        ".%s.%s".formatted(mutability().toString(),suffix)
+                    ).toFile();
+                    tmp.deleteOnExit();
+                }
+                if(background) {
+                    final LazyFileSequence out = LazyFileSequence.start(data,tmp,charset,suffix);
+                    if(block != null) out.block = block;
+                    keep = true;
+                    return out;
+                }
+                if(parallelism == null) fscs = transcode(data,tmp,charset,null);
+                else {
+                    final ForkJoinPool pool = new ForkJoinPool(parallelism);
+                    try {fscs = transcode(data,tmp,charset,pool);}
+                    finally {pool.shutdown();}
+                }
+                if(dir != null) {
+                    final TranscodeCache.Entry entry = TranscodeCache.store(
+                        dir,
+                        source,
+                        tmp,
+                        fscs,
+                        cacheLimit == null? TranscodeCache.DEFAULT_LIMIT : cacheLimit
+                    );
+                    // The temporary file became the entry.
+                    tmp = null;
+                    store = entry.file();
+                    dataLength = entry.length() / fscs.size;
+                } else dataLength = (store = tmp).length() / fscs.size;
+            }
+            
+            if(start == null) start = 0L;
+            else if(dataLength < start || start < 0L && (start += dataLength) < 0L)
                 throw new IllegalArgumentException(
-                    "Invalid range: [%d,%d)"
-                    .formatted(start,end)
+                    "Invalid start index %d for array of length %d."
+                    .formatted(start,dataLength)
                 );
+            
+            if(end == null) {
+                if(length == null) length = (end = dataLength) - start;
+                else if(length < 0L || (end = length + start) > dataLength)
+                    throw new IllegalArgumentException(
+                        "Length %d is invalid."
+                        .formatted(length)
+                    );
+            } else {
+                if(dataLength < end || end < 0L && (end += dataLength) < 0L)
+                    throw new IllegalArgumentException(
+                        "Invalid end index %d for array of length %d."
+                        .formatted(end,dataLength)
+                    );
+                if((length = end - start) < 0L)
+                    throw new IllegalArgumentException(
+                        "Invalid range: [%d,%d)"
+                        .formatted(start,end)
+                    );
+            }
+            if(length == 0L) return EMPTY;
+            final FileSequence out = index != null? new Utf8FileSequence(store,index,start,end,suffix)
+                                                  : construct(store,start,end,length,suffix,fscs);
+            keep = true;
+            return out;
+        } catch(IOException|SecurityException e) {
+            throw FileSequence.ioe(e);
+        } finally {
+            if(!keep && tmp != null) {
+                try {tmp.delete();}
+                catch(final SecurityException e) {}
+            }
         }
-        if(length == 0L) return EMPTY;
-        try {return construct(data,start,end,length,cs == null? StandardCharsets.UTF_8 : cs);}
-        catch(IOException|SecurityException e) {throw FileSequence.ioe(e);}
     }
 }
\ No newline at end of file
@@ -0,0 +1,297 @@
+package sequence;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static sequence.PageCache.PAGE_SCALAR;
+
+import java.util.Objects;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import util.FixedSizeCharset;
+
+/**
+ * A {@linkplain FileSequence} whose file is still being transcoded by a
+ * background thread. Since the width of the characters is not known until the
+ * whole input has been decoded, the file always holds two bytes per character.
+ * <p>
+ * Reads of characters which have already been written proceed immediately,
+ * and reads of later characters wait until they are written. The size of the
+ * sequence is only known once the transcoding finishes, so
+ * {@linkplain #size()} and any operation which depends on it, such as negative
+ * indices and the iterators, wait for the transcoding to finish.
+ * 
+ * @author AzureTriple
+ * 
+ * @implNote An error while transcoding is thrown by the first read which
+ *           waits for the failed region. The transcoding stops early once the
+ *           sequence and all of its views are closed.
+ */
+class LazyFileSequence extends FileSequence {
+    static final FixedSizeCharset LAZY_CS = FixedSizeCharset.Fixed_2;
+    /**The number of bytes decoded at once by the background thread.*/
+    static final int BLOCK = 1 << 16;
+    
+    /**The number of characters which have been written to the file.*/
+    static final class Progress {
+        volatile long chars = 0L;
+        volatile boolean done = false;
+        Exception failure = null;
+        
+        synchronized void advance(final long chars) {
+            this.chars = chars;
+            notifyAll();
+        }
+        synchronized void finish(final Exception failure) {
+            this.failure = failure;
+            done = true;
+            notifyAll();
+        }
+        /**
+         * Waits until at least <code>n</code> characters are written or the
+         * transcoding finishes.
+         * 
+         * @throws IOException The transcoding failed before the characters were
+         *                     written, or the thread was interrupted.
+         */
+        void await(final long n) throws IOException {
+            if(chars < n && !done) {
+                synchronized(this) {
+                    try {while(chars < n && !done) wait();}
+                    catch(final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException();
+                    }
+                }
+            }
+            if(chars < n && failure != null) throw new IOException(failure);
+        }
+    }
+    
+    final Progress progress;
+    /**
+     * <code>true</code> iff this is the sequence returned by the builder, whose
+     * end is not known until the transcoding finishes. Views always end at a
+     * character which has been written.
+     */
+    final boolean root;
+    
+    private LazyFileSequence(final File file,final Progress progress,final String suffix)
+                             throws UncheckedIOException {
+        super(file,0L,0L,0L,Mutability.IMMUTABLE,suffix,LAZY_CS);
+        this.progress = progress;
+        root = true;
+    }
+    /**@param handle A handle which has been retained for this sequence.*/
+    private LazyFileSequence(final Handle handle,final File file,final Progress progress,
+                             final long start,final long end,final String suffix) {
+        super(handle,file,start,end,end - start,Mutability.IMMUTABLE,suffix,LAZY_CS);
+        this.progress = progress;
+        root = false;
+    }
+    
+    /**
+     * Starts to transcode the input into the file on a background thread.
+     * 
+     * @return A sequence which reads the file as it is written.
+     */
+    static LazyFileSequence start(final File src,final File dst,final Charset cs,final String suffix)
+                                  throws UncheckedIOException {
+        final Progress progress = new Progress();
+        final LazyFileSequence out = new LazyFileSequence(dst,progress,suffix);
+        final Handle handle = out.handle;
+        final Thread t = new Thread(() -> {
+            try {
+                transcode(src,dst,cs,progress,handle);
+                progress.finish(null);
+            } catch(final Exception e) {progress.finish(e);}
+        },"sequence-transcoder");
+        t.setDaemon(true);
+        t.start();
+        return out;
+    }
+    /**
+     * Writes the characters of the input to the file, publishing the progress
+     * after each block.
+     * 
+     * @param handle The handle of the sequence, which is used to stop once every
+     *               view of the file is closed.
+     */
+    static void transcode(final File src,final File dst,final Charset cs,
+                          final Progress progress,final Handle handle) throws IOException {
+        final CharsetDecoder d = cs.newDecoder();
+        final ByteBuffer I = ByteBuffer.allocate(BLOCK),
+                         O = ByteBuffer.allocate(BLOCK << 1);
+        final CharBuffer C = O.asCharBuffer();
+        long chars = 0L;
+        try(FileChannel in = FileChannel.open(src.toPath(),READ);
+            FileChannel out = FileChannel.open(dst.toPath(),WRITE)) {
+            boolean eof = false;
+            CoderResult r;
+            do {
+                if(handle.refs.get() == 0) throw new ClosedChannelException();
+                if(!eof) eof = in.read(I) == -1;
+                r = d.decode(I.flip(),C.clear(),eof);
+                I.compact();
+                if(r.isError()) r.throwException();
+                chars = write(O,C.position(),out,chars,progress);
+            } while(!eof || r.isOverflow());
+            do {
+                r = d.flush(C.clear());
+                chars = write(O,C.position(),out,chars,progress);
+            } while(r.isOverflow());
+        }
+    }
+    /**
+     * Writes the first <code>n</code> characters in the buffer after the
+     * characters which were already written.
+     * 
+     * @return The number of characters in the file.
+     */
+    private static long write(final ByteBuffer O,final int n,final FileChannel out,
+                              final long chars,final Progress progress) throws IOException {
+        O.clear().limit(n << 1);
+        while(O.hasRemaining()) out.write(O,(chars << 1) + O.position());
+        progress.advance(chars + n);
+        return chars + n;
+    }
+    
+    /**Waits for the transcoding to finish, then fixes the end of the root sequence.*/
+    void finish() throws UncheckedIOException {
+        if(!root) return;
+        try {progress.await(Long.MAX_VALUE);}
+        catch(final IOException e) {throw ioe(e);}
+        end = length = progress.chars << 1;
+    }
+    /**
+     * Waits until the first <code>n</code> characters of the file are written.
+     * 
+     * @return <code>true</code> iff they were written, or <code>false</code> if
+     *         the file holds fewer characters.
+     */
+    boolean ready(final long n) throws UncheckedIOException {
+        try {progress.await(n);}
+        catch(final IOException e) {throw ioe(e);}
+        return 0L <= n && n <= progress.chars;
+    }
+    
+    @Override
+    FileSequence share(final long start,final long end) throws UncheckedIOException {
+        final LazyFileSequence out = new LazyFileSequence(retain(),file,progress,start,end,suffix);
+        out.block = block;
+        return out;
+    }
+    /**Pages which are still being written are read without the {@linkplain PageCache}.*/
+    @Override
+    char read(final long i) throws IOException {
+        if(progress.done || (((i >>> 1) >>> PAGE_SCALAR) + 1L << PAGE_SCALAR) <= progress.chars)
+            return super.read(i);
+        final ByteBuffer b = ByteBuffer.allocate(2);
+        handle.readFully(b,i);
+        return b.getChar(0);
+    }
+    /**
+     * The root sequence only reads asynchronously once the transcoding has
+     * finished, since its end is not known before then.
+     */
+    @Override
+    boolean async() {
+        if(root) {
+            if(!progress.done || progress.failure != null) return false;
+            finish();
+        }
+        return super.async();
+    }
+    
+    @Override
+    boolean bytes(final long begin,final ByteBuffer dst) throws IOException {
+        finish();
+        return super.bytes(begin,dst);
+    }
+    
+    @Override
+    public long size() {
+        finish();
+        return super.size();
+    }
+    @Override
+    public char charAt(final long index) throws IndexOutOfBoundsException,UncheckedIOException {
+        if(root && index >= 0L && ready(index + 1L)) {
+            try {return read(index << 1);}
+            catch(final IOException e) {throw ioe(e);}
+        }
+        finish();
+        return super.charAt(index);
+    }
+    @Override
+    public Sequence subSequence(final long start,final long end) throws IndexOutOfBoundsException,
+                                                                        UncheckedIOException {
+        if(root && 0L <= start && start <= end && ready(end))
+            return start != end? share(start << 1,end << 1) : EMPTY;
+        finish();
+        return super.subSequence(start,end);
+    }
+    @Override
+    public int read(final long srcStart,final char[] dst,final int off,final int len)
+                    throws IndexOutOfBoundsException,UncheckedIOException {
+        Objects.checkFromIndexSize(off,len,dst.length);
+        if(root && srcStart >= 0L && ready(srcStart + len)) {
+            try {copy(srcStart << 1,dst,off,len);}
+            catch(final IOException e) {throw ioe(e);}
+            return len;
+        }
+        finish();
+        return super.read(srcStart,dst,off,len);
+    }
+    
+    @Override
+    public SimpleSequenceIterator iterator() throws UncheckedIOException {
+        finish();
+        return super.iterator();
+    }
+    @Override
+    public SequenceIterator forwardIterator() throws UncheckedIOException {
+        finish();
+        return super.forwardIterator();
+    }
+    @Override
+    public SequenceIterator reverseIterator() throws UncheckedIOException {
+        finish();
+        return super.reverseIterator();
+    }
+    @Override
+    public String toString() throws UncheckedIOException {
+        finish();
+        return super.toString();
+    }
+    @Override
+    public Sequence copyTo(final char[] arr,final int offset) throws IllegalArgumentException,
+                                                                     UncheckedIOException {
+        finish();
+        return super.copyTo(arr,offset);
+    }
+    @Override
+    public MutableSequence mutableCopy() throws UncheckedIOException {
+        finish();
+        return super.mutableCopy();
+    }
+    @Override
+    public Sequence immutableCopy() throws UncheckedIOException {
+        finish();
+        return super.immutableCopy();
+    }
+    @Override
+    public Sequence shallowCopy() throws UncheckedIOException {
+        finish();
+        return super.shallowCopy();
+    }
+}
\ No newline at end of file
@@ -2,6 +2,7 @@ package sequence;
 
 import java.io.UncheckedIOException;
 import sequence.MutableSequence.MutableSequenceIterator;
+import sequence.Sequence.CharConsumer;
 import sequence.Sequence.SequenceIterator;
 
 /**
@@ -28,9 +29,12 @@ abstract class MSI<I extends SequenceIterator> implements MutableSequenceIterato
     @Override public Character peek() throws UncheckedIOException {return sooper.peek();}
     @Override public Character peek(final int offset) throws UncheckedIOException {return sooper.peek(offset);}
     @Override public Character peek(final long offset) throws UncheckedIOException {return sooper.peek(offset);}
+    @Override public int peekChar() throws UncheckedIOException {return sooper.peekChar();}
     
     @Override public boolean hasNext() {return sooper.hasNext();}
     @Override public Character next() throws UncheckedIOException {return sooper.next();}
+    @Override public int nextChar() throws UncheckedIOException {return sooper.nextChar();}
+    @Override public void forEachChar(final CharConsumer action) throws UncheckedIOException {sooper.forEachChar(action);}
     
     @Override public Character skipWS() throws UncheckedIOException {return sooper.skipWS();}
     @Override public Character skipWS(final int limit) throws UncheckedIOException {return sooper.skipWS(limit);}
@@ -0,0 +1,264 @@
+package sequence;
+
+import static java.lang.Math.min;
+
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner.Cleanable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import util.FixedSizeCharset;
+import util.NoIO;
+
+/**
+ * A {@linkplain FileSequence} which reads its characters from memory-mapped
+ * windows of the file instead of reading a {@linkplain FileChannel}.
+ * 
+ * @author AzureTriple
+ * 
+ * @implNote The windows are shared by all views and iterators of a sequence.
+ *           Since a mapping remains valid after its channel is closed, these
+ *           sequences do not hold a file handle. A {@linkplain MappedByteBuffer}
+ *           cannot be unmapped manually, so the windows are released once they
+ *           are garbage collected. On runtimes which
+ *           support it, {@linkplain #MAPPER} instead creates sequences which map
+ *           the whole file into a memory segment that is unmapped when the last
+ *           view of it is closed.
+ */
+class MappedFileSequence extends FileSequence {
+    /**
+     * Each window holds at most <code>2^WINDOW_SCALAR</code> bytes. Since this is
+     * a multiple of every character size, characters never straddle windows.
+     */
+    static final int WINDOW_SCALAR = 30;
+    static final long WINDOW_SIZE = 1L << WINDOW_SCALAR,
+                      WINDOW_MASK = WINDOW_SIZE - 1L;
+    
+    final ByteBuffer[] windows;
+    /**The index of the first mapped window in the file.*/
+    final int first;
+    
+    MappedFileSequence(final File file,final long start,final long end,final long length,
+                       final String suffix,final FixedSizeCharset cs)
+                       throws UncheckedIOException {
+        super(file,start,end,length,suffix,cs,null);
+        first = (int)(start >>> WINDOW_SCALAR);
+        try {windows = map(file,first,end);}
+        catch(IOException|SecurityException e) {throw ioe(e);}
+    }
+    /**Creates a view of the windows of the parent.*/
+    MappedFileSequence(final MappedFileSequence parent,final long start,final long end) {
+        super(parent.file,start,end,end - start,parent.suffix,parent.cs,null);
+        windows = parent.windows;
+        first = parent.first;
+    }
+    /**
+     * Creates a sequence which reads windows that were filled by other means,
+     * starting from the first window of the file.
+     */
+    MappedFileSequence(final File file,final ByteBuffer[] windows,final long start,
+                       final long end,final long length,final String suffix,
+                       final FixedSizeCharset cs) {
+        super(file,start,end,length,suffix,cs,null);
+        this.windows = windows;
+        first = 0;
+    }
+    /**
+     * Creates a sequence without windows or a file handle, for extending types
+     * which map the file by other means.
+     * 
+     * @see FileSequence#FileSequence(File,long,long,long,String,FixedSizeCharset,Runnable)
+     */
+    MappedFileSequence(final File file,final long start,final long end,final long length,
+                       final String suffix,final FixedSizeCharset cs,final Runnable release) {
+        super(file,start,end,length,suffix,cs,release);
+        windows = null;
+        first = 0;
+    }
+    
+    /**Creates the mapped sequences returned by the builder.*/
+    static class Mapper {
+        Mapper() {}
+        
+        MappedFileSequence map(final File file,final long start,final long end,final long length,
+                               final String suffix,final FixedSizeCharset cs)
+                               throws UncheckedIOException {
+            return new MappedFileSequence(file,start,end,length,suffix,cs);
+        }
+    }
+    /**
+     * The mapper used by this process. When the runtime supports the Foreign
+     * Function &amp; Memory API, this is replaced by one which maps the whole file
+     * at once, which is only compiled for newer JDKs. Setting the system property
+     * <code>sequence.noSegments</code> to <code>true</code> forces the windowed
+     * mapping.
+     */
+    static final Mapper MAPPER = load();
+    private static Mapper load() {
+        if(!Boolean.getBoolean("sequence.noSegments")) {
+            try {
+                return (Mapper)Class.forName("sequence.SegmentFileSequence$SegmentMapper")
+                                    .getDeclaredConstructor()
+                                    .newInstance();
+            } catch(final ReflectiveOperationException|LinkageError e) {}
+        }
+        return new Mapper();
+    }
+    
+    /**
+     * Maps the windows of the file which cover the bytes from the start of the
+     * window at index <code>first</code> to <code>end</code> (exclusive).
+     */
+    static MappedByteBuffer[] map(final File file,final int first,final long end)
+                                  throws IOException {
+        final MappedByteBuffer[] out = new MappedByteBuffer[
+            (int)((end - 1L) >>> WINDOW_SCALAR) - first + 1
+        ];
+        try(FileChannel fc = FileChannel.open(file.toPath(),StandardOpenOption.READ)) {
+            for(int w = 0;w < out.length;++w) {
+                final long pos = (long)(first + w) << WINDOW_SCALAR;
+                out[w] = fc.map(MapMode.READ_ONLY,pos,min(WINDOW_SIZE,end - pos));
+            }
+        }
+        return out;
+    }
+    
+    /**@return The window which holds the byte at the specified index.*/
+    ByteBuffer window(final long i) {return windows[(int)(i >>> WINDOW_SCALAR) - first];}
+    /**@return The character which starts at the specified byte index.*/
+    char get(final long i) {
+        final ByteBuffer w = window(i);
+        final int o = (int)(i & WINDOW_MASK);
+        return big? w.getChar(o) : (char)(w.get(o) & 0xFF);
+    }
+    
+    @Override FileSequence share(final long start,final long end) {return new MappedFileSequence(this,start,end);}
+    /**The iterators read the windows directly and do not need a buffer.*/
+    @Override int readBlock() {return 0;}
+    
+    @NoIO @Override
+    public char charAt(final long index) throws IndexOutOfBoundsException {return get(idx(index));}
+    
+    @Override
+    void copy(long begin,final char[] arr,int offset,int count) {
+        while(count != 0) {
+            final ByteBuffer w = window(begin);
+            final int o = (int)(begin & WINDOW_MASK),
+                      n = min(count,(w.limit() - o) / cs.size);
+            cs.decode(w.slice(o,n * cs.size),arr,offset,n);
+            begin += (long)n * cs.size;
+            offset += n;
+            count -= n;
+        }
+    }
+    @Override
+    boolean bytes(long begin,final ByteBuffer dst) {
+        while(dst.hasRemaining()) {
+            final ByteBuffer w = window(begin);
+            final int o = (int)(begin & WINDOW_MASK),
+                      n = min(dst.remaining(),w.limit() - o);
+            dst.put(w.slice(o,n));
+            begin += n;
+        }
+        return true;
+    }
+    
+    /**A {@linkplain SimpleSequenceIterator} over the mapped windows.*/
+    @NoIO
+    private static class MSFSI implements SimpleSequenceIterator {
+        /**Releases the backing of a segment, or <code>null</code> for the windows.*/
+        private final Cleanable cleanable;
+        final MappedFileSequence parent;
+        // Indices are measured in bytes.
+        final long end;
+        long cursor;
+        final int scalar;
+        
+        MSFSI(final MappedFileSequence parent) {
+            final Runnable release = parent.retainBacking();
+            cleanable = release == null? null : CleaningUtil.register(this,new fscleaner(null,release));
+            this.parent = parent;
+            cursor = parent.start;
+            end = parent.end;
+            scalar = parent.cs.size;
+        }
+        
+        @NoIO @Override
+        public SimpleSequenceIterator skip(final long count) throws IllegalArgumentException,
+                                                                    NoSuchElementException {
+            if(count == 0L) return this;
+            if(count < 0L)
+                throw new IllegalArgumentException(
+                    "Negative offset %d."
+                    .formatted(count)
+                );
+            if(cursor + count * scalar >= end)
+                throw new NoSuchElementException(
+                    "Cannot skip %d characters after index %d."
+                    .formatted(count,(cursor - parent.start) / scalar)
+                );
+            cursor += count * scalar;
+            return this;
+        }
+        
+        @NoIO @Override public boolean hasNext() {return cursor != end;}
+        @NoIO @Override
+        public Character next() throws NoSuchElementException {
+            if(!hasNext()) throw new NoSuchElementException();
+            final char c = parent.get(cursor);
+            cursor += scalar;
+            return c;
+        }
+        @NoIO @Override
+        public int nextChar() {
+            if(!hasNext()) return EOS;
+            final char c = parent.get(cursor);
+            cursor += scalar;
+            return c;
+        }
+        
+        @NoIO @Override
+        public void forEachRemaining(final Consumer<? super Character> action) {
+            if(action == null) return;
+            for(;cursor != end;cursor += scalar) action.accept(parent.get(cursor));
+        }
+        @NoIO @Override
+        public void forEachChar(final CharConsumer action) {
+            if(action == null) return;
+            for(;cursor != end;cursor += scalar) action.accept(parent.get(cursor));
+        }
+        
+        @NoIO @Override
+        public void close() {
+            cursor = end;
+            if(cleanable != null) cleanable.clean();
+        }
+    }
+    @NoIO @Override public SimpleSequenceIterator iterator() {return new MSFSI(this);}
+    
+    /**Mapped Forward File Sequence Iterator*/
+    static class MappedFFSI extends FFSI {
+        MappedFFSI(final MappedFileSequence fs) {super(fs);}
+        @Override char get(final long i) {return ((MappedFileSequence)parent).get(i);}
+    }
+    /**Mapped Reverse File Sequence Iterator*/
+    static class MappedRFSI extends RFSI {
+        MappedRFSI(final MappedFileSequence fs) {super(fs);}
+        @Override char get(final long i) {return ((MappedFileSequence)parent).get(i);}
+    }
+    @Override
+    public SequenceIterator forwardIterator() {
+        return isEmpty()? EMPTY.forwardIterator() : new MappedFFSI(this);
+    }
+    @Override
+    public SequenceIterator reverseIterator() {
+        return isEmpty()? EMPTY.reverseIterator() : new MappedRFSI(this);
+    }
+}
\ No newline at end of file
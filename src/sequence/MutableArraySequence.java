@@ -133,8 +133,11 @@ class MutableArraySequence extends ArraySequence implements MutableSequence {
         @NoIO @Override public Character peek() {return super.peek();}
         @NoIO @Override public Character peek(final int offset) {return super.peek(offset);}
         @NoIO @Override public Character peek(final long offset) {return super.peek(offset);}
+        @NoIO @Override public int peekChar() {return super.peekChar();}
         
         @NoIO @Override public Character next() {return super.next();}
+        @NoIO @Override public int nextChar() {return super.nextChar();}
+        @NoIO @Override public void forEachChar(final CharConsumer action) {super.forEachChar(action);}
         
         @NoIO @Override public Character skipWS() {return super.skipWS();}
         @NoIO @Override public Character skipWS(final int limit) {return super.skipWS(limit);}
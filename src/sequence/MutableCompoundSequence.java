@@ -309,6 +309,21 @@ class MutableCompoundSequence extends CompoundSequence implements MutableSequenc
         return new CompoundSequence(sscpy(subSizes),cpy,closeIsShared);
     }
     @Override
+    public MutableSequence flush() throws UncheckedIOException {
+        for(final Sequence s : data) ((MutableSequence)s).flush();
+        return this;
+    }
+    @Override
+    public Sequence snapshot() throws UncheckedIOException {
+        final Sequence[] cpy = new Sequence[data.length];
+        {
+            int i = 0;
+            try {for(;i < cpy.length;++i) cpy[i] = ((MutableSequence)data[i]).snapshot();}
+            catch(final UncheckedIOException e) {closeIgnore(cpy,0,i); throw e;}
+        }
+        return new CompoundSequence(sscpy(subSizes),cpy,closeIsShared);
+    }
+    @Override
     public MutableSequence shallowCopy() throws UncheckedIOException {
         return (MutableSequence)super.shallowCopy();
     }
@@ -1,13 +1,14 @@
 package sequence;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
+import static java.lang.Math.min;
+import static java.nio.file.StandardOpenOption.WRITE;
+
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import util.FileUtils;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import util.FixedSizeCharset;
 
 /**
@@ -27,9 +28,35 @@ class MutableFileSequence extends FileSequence implements MutableSequence {
                         final long length,
                         final String suffix)
                         throws UncheckedIOException {
+        this(file,start,end,length,suffix,new WriteBehind());
+    }
+    /**@param writes The buffer of the writes to the file, which this sequence starts.*/
+    MutableFileSequence(final File file,
+                        final long start,
+                        final long end,
+                        final long length,
+                        final String suffix,
+                        final WriteBehind writes)
+                        throws UncheckedIOException {
         super(file,start,end,length,Mutability.MUTABLE,suffix,MUTABLE_CS);
+        (handle.writes = writes).start(handle);
+    }
+    /**@param handle A handle which has been retained for this sequence.*/
+    MutableFileSequence(final Handle handle,
+                        final File file,
+                        final long start,
+                        final long end,
+                        final long length,
+                        final String suffix) {
+        super(handle,file,start,end,length,Mutability.MUTABLE,suffix,MUTABLE_CS);
     }
     
+    /**
+     * Mutable sequences read one character at a time so that writes made through
+     * other views of the same file are always visible.
+     */
+    @Override int readBlock() {return M_SCALAR;}
+    
     @Override
     public MutableSequence set(final int index,final char c)
                                throws IndexOutOfBoundsException,
@@ -40,8 +67,10 @@ class MutableFileSequence extends FileSequence implements MutableSequence {
     public MutableSequence set(final long index,final char c)
                                throws IndexOutOfBoundsException,
                                       UncheckedIOException {
-        try {data.seek(idx(index)); data.writeChar(c);}
+        final long i = idx(index);
+        try {handle.writeFully(ByteBuffer.allocate(M_SCALAR).putChar(0,c),i);}
         catch(final IOException e) {throw ioe(e);}
+        PageCache.update(file,M_SCALAR,i / M_SCALAR,new char[] {c},0,1);
         return this;
     }
     @Override
@@ -59,10 +88,11 @@ class MutableFileSequence extends FileSequence implements MutableSequence {
                 "Input string of size %d is too large to set at index %d with sequence length %d."
                 .formatted(data.length,(offset - start) / M_SCALAR,length / M_SCALAR)
             );
-        try {
-            this.data.seek(offset);
-            for(final char c : data) this.data.writeChar(c);
-        } catch(final IOException e) {throw ioe(e);}
+        final ByteBuffer buf = ByteBuffer.allocate(data.length * M_SCALAR);
+        buf.asCharBuffer().put(data);
+        try {handle.writeFully(buf,offset);}
+        catch(final IOException e) {throw ioe(e);}
+        PageCache.update(file,M_SCALAR,offset / M_SCALAR,data,0,data.length);
         return this;
     }
     @Override
@@ -71,123 +101,71 @@ class MutableFileSequence extends FileSequence implements MutableSequence {
                                       UncheckedIOException {
         return set((long)offset,data);
     }
-    private void putFS1(final FileSequence fs) throws IOException {
-        // Direct transfer.
-        fs.data.getChannel().transferTo(
-            fs.start,
-            fs.length,
-            this.data.getChannel()
-        );
-    }
-    private void putFS2(final FileSequence fs,final BufferedOutputStream O)
-                        throws IOException,SecurityException {
-        fs.data.seek(fs.start);
-        final BufferedInputStream I = new BufferedInputStream(
-            new FileInputStream(fs.data.getFD())
-        );
-        for(long i = 0L;i < fs.length;++i) {
-            O.write(0);
-            O.write(I.read());
-        }
-        O.flush();
-    }
-    private void putFS(final FileSequence fs) throws IOException,SecurityException {
-        if(fs.big) putFS1(fs);
-        else {
-            putFS2(
-                fs,
-                new BufferedOutputStream(
-                    new FileOutputStream(data.getFD())
-                )
-            );
-        }
-    }
-    private void putAS(final ArraySequence as,final BufferedOutputStream O)
-                       throws IOException {
-        for(int c = as.start;c != as.end;++c) {
-            O.write(as.data[c] >> 8);
-            O.write(as.data[c]);
-        }
-        O.flush();
-    }
-    private void putAS(final ArraySequence as) throws IOException,SecurityException {
-        putAS(
-            as,
-            new BufferedOutputStream(
-                new FileOutputStream(data.getFD())
-            )
-        );
-    }
-    private void putUnknown(final Sequence s,final BufferedOutputStream O)
-                            throws IOException {
-        for(final char c : s) {O.write(c >> 8); O.write(c);}
-        O.flush();
-    }
-    private void putUnknown(final Sequence s) throws IOException,SecurityException {
-        putUnknown(
-            s,
-            new BufferedOutputStream(
-                new FileOutputStream(data.getFD())
-            )
-        );
-    }
-    private void putCS(final Sequence[] cs,final BufferedOutputStream O)
-                       throws IOException {
-        for(final Sequence s : cs) {
-            if(s instanceof FileSequence) {
-                final FileSequence fs = (FileSequence)s;
-                if(fs.big) putFS1(fs);
-                else putFS2(fs,O);
-            } else if(s instanceof ArraySequence)
-                putAS((ArraySequence)s,O);
-            else if(s instanceof CompoundSequence)
-                putCS(((CompoundSequence)s).data,O);
-            else putUnknown(s,O);
-        }
-    }
-    private void putCS(final CompoundSequence cs) throws IOException,SecurityException {
-        putCS(
-            cs.data,
-            new BufferedOutputStream(
-                new FileOutputStream(data.getFD())
-            )
-        );
-    }
+    /**The maximum number of characters written at once by {@linkplain #set(long,CharSequence)}.*/
+    static final int SET_BLOCK = 1 << 13;
     @Override
     public MutableSequence set(long offset,final CharSequence data)
                                throws IndexOutOfBoundsException,
                                       UncheckedIOException {
         offset = idx(offset);
+        final long l = data instanceof Sequence? ((Sequence)data).size() : data.length();
+        if(offset + l * M_SCALAR > length + start)
+            throw new IndexOutOfBoundsException(
+                "Input string of size %d is too large to set at index %d with sequence length %d."
+                .formatted(l,(offset - start) / M_SCALAR,length / M_SCALAR)
+            );
+        // Copy blocks of characters with positional writes so that the channel,
+        // which is shared with other views, is never moved.
+        if(data instanceof FileSequence && setBytes(offset,(FileSequence)data,l)) return this;
+        final char[] chars = new char[(int)min(l,SET_BLOCK)];
+        final ByteBuffer buf = ByteBuffer.allocate(chars.length * M_SCALAR);
+        final CharBuffer view = buf.asCharBuffer();
         try {
-            this.data.seek(offset);
-            if(data instanceof Sequence) {
-                final long s = ((Sequence)data).size() * M_SCALAR;
-                if(offset + s > length + start)
-                    throw new IndexOutOfBoundsException(
-                        "Input string of size %d is too large to set at index %d with sequence length %d."
-                        .formatted(s / M_SCALAR,(offset - start) / M_SCALAR,length / M_SCALAR)
-                    );
-                if(data instanceof FileSequence)
-                    putFS((FileSequence)data);
-                else if(data instanceof ArraySequence)
-                    putAS((ArraySequence)data);
-                else if(data instanceof CompoundSequence)
-                    putCS((CompoundSequence)data);
-                else
-                    putUnknown((Sequence)data);
-                this.data.getFD().sync();
-            } else {
-                final int l = data.length();
-                if(offset + (long)l * M_SCALAR > length + start)
-                    throw new IndexOutOfBoundsException(
-                        "Input string of size %d is too large to set at index %d with sequence length %d."
-                        .formatted(l,(offset - start) / M_SCALAR,length / M_SCALAR)
-                    );
-                for(int i = 0;i < l;++i) this.data.writeChar(data.charAt(i));
+            for(long i = 0L;i < l;) {
+                final int n;
+                if(data instanceof Sequence) n = ((Sequence)data).read(i,chars,0,chars.length);
+                else {
+                    n = (int)min(chars.length,l - i);
+                    for(int j = 0;j < n;++j) chars[j] = data.charAt((int)i + j);
+                }
+                view.clear().put(chars,0,n);
+                handle.writeFully(buf.clear().limit(n * M_SCALAR),offset + i * M_SCALAR);
+                PageCache.update(file,M_SCALAR,offset / M_SCALAR + i,chars,0,n);
+                i += n;
             }
         } catch(IOException|SecurityException e) {throw ioe(e);}
         return this;
     }
+    /**
+     * Copies the bytes of a file sequence with one or two bytes per character
+     * instead of its characters, widening single-byte characters a block at a
+     * time.
+     * 
+     * @param offset The index of the first byte to write.
+     * @param l      The number of characters in the source.
+     * 
+     * @return <code>false</code> iff the bytes of the source cannot be read
+     *         directly, in which case nothing is written.
+     */
+    private boolean setBytes(final long offset,final FileSequence src,final long l)
+                             throws UncheckedIOException {
+        final int w = src.cs.size;
+        if(w > M_SCALAR) return false;
+        final int block = (int)min(l,COPY_BLOCK >>> 1);
+        final ByteBuffer in = ByteBuffer.allocate(block * w),
+                         buf = w == M_SCALAR? in : ByteBuffer.allocate(block * M_SCALAR);
+        try {
+            for(long i = 0L;i < l;) {
+                final int n = (int)min(block,l - i);
+                if(!src.bytes(src.start + i * w,in.clear().limit(n * w))) return false;
+                if(w != M_SCALAR) FixedSizeCharset.widen(in.array(),0,buf.array(),0,n);
+                handle.writeFully(buf.clear().limit(n * M_SCALAR),offset + i * M_SCALAR);
+                PageCache.update(file,M_SCALAR,offset / M_SCALAR + i,buf.flip());
+                i += n;
+            }
+        } catch(IOException|SecurityException e) {throw ioe(e);}
+        return true;
+    }
     
     @Override
     public MutableSequence subSequence(final int start,final int end) throws IndexOutOfBoundsException,
@@ -203,7 +181,7 @@ class MutableFileSequence extends FileSequence implements MutableSequence {
                 .formatted(end / M_SCALAR,start / M_SCALAR)
             );
         return start != end? start != this.start || end != this.end
-                ? new MutableFileSequence(file,start,end,end - start,suffix)
+                ? new MutableFileSequence(retain(),file,start,end,end - start,suffix)
                 : shallowCopy()
                 : EMPTY;
     }
@@ -216,8 +194,8 @@ class MutableFileSequence extends FileSequence implements MutableSequence {
     private final File cpy(final long start,final long length) throws UncheckedIOException {
         final File nf = tmpFile(Mutability.MUTABLE);
         // Mutable file sequence already in fixed-2 form, don't need to re-encode.
-        try {FileUtils.transferDirect(file,start,nf,0L,length);}
-        catch(IOException|SecurityException|IllegalArgumentException e) {
+        try(FileChannel out = FileChannel.open(nf.toPath(),WRITE)) {handle.transferTo(start,start + length,out);}
+        catch(IOException|SecurityException e) {
             try {nf.delete();}
             catch(final SecurityException e1) {}
             throw ioe(e);
@@ -235,7 +213,7 @@ class MutableFileSequence extends FileSequence implements MutableSequence {
             );
         if(start == end) return EMPTY;
         final long l = end - start;
-        return new MutableFileSequence(cpy(start,l),0,l,l,suffix);
+        return new MutableFileSequence(cpy(start,l),0,l,l,suffix,handle.writes.like());
     }
     @Override
     public MutableSequence mutableSubSequence(final int start,final int end)
@@ -271,8 +249,7 @@ class MutableFileSequence extends FileSequence implements MutableSequence {
                     "Cannot set character at index %d."
                     .formatted(sooper.cursor / M_SCALAR)
                 );
-            try {sooper.data.seek(sooper.cursor); sooper.data.writeChar(c);}
-            catch(final IOException e) {throw ioe(e);}
+            sooper.put(sooper.cursor,c);
             return this;
         }
         @Override
@@ -296,8 +273,7 @@ class MutableFileSequence extends FileSequence implements MutableSequence {
                         offset
                     )
                 );
-            try {sooper.data.seek(noff); sooper.data.writeChar(c);}
-            catch(final IOException e) {throw ioe(e);}
+            sooper.put(noff,c);
             return this;
         }
         
@@ -311,7 +287,7 @@ class MutableFileSequence extends FileSequence implements MutableSequence {
                     .formatted(a / M_SCALAR,b / M_SCALAR)
                 );
             return a != b? a != sooper.start || b != sooper.end
-                    ? new MutableFileSequence(sooper.file,a,b,b-a,sooper.suffix)
+                    ? new MutableFileSequence(sooper.parent.retain(),sooper.file,a,b,b-a,sooper.suffix)
                     : (MutableSequence)sooper.parent.shallowCopy()
                     : EMPTY;
         }
@@ -347,27 +323,63 @@ class MutableFileSequence extends FileSequence implements MutableSequence {
     }
     @Override
     public MutableSequence mutableCopy() throws UncheckedIOException {
-        return new MutableFileSequence(cpy(start,length),0,length,length,suffix);
+        return new MutableFileSequence(cpy(start,length),0,length,length,suffix,handle.writes.like());
+    }
+    /**
+     * Writes the characters to the channel with one byte per character.
+     * 
+     * @return <code>false</code> iff a character needs two bytes, in which case
+     *         the channel holds only some of the characters.
+     */
+    private boolean narrow(final FileChannel out) throws IOException {
+        final long size = size();
+        final int block = (int)min(size,COPY_BLOCK >>> 1);
+        final ByteBuffer in = ByteBuffer.allocate(block * M_SCALAR),
+                         buf = ByteBuffer.allocate(block);
+        for(long i = 0L;i < size;) {
+            final int n = (int)min(block,size - i);
+            handle.readFully(in.clear().limit(n * M_SCALAR),start + i * M_SCALAR);
+            if(FixedSizeCharset.narrow(in.array(),0,buf.array(),0,n) != n) return false;
+            for(buf.clear().limit(n);buf.hasRemaining();) out.write(buf);
+            i += n;
+        }
+        return true;
     }
+    /**
+     * Only the characters of this sequence are copied, narrowed to one byte each
+     * if they all fit.
+     */
     @Override
     public Sequence immutableCopy() throws UncheckedIOException {
         final File nf = tmpFile(Mutability.IMMUTABLE);
-        try {
-            return new FileSequence(
-                nf,
-                start,end,length,
-                Mutability.IMMUTABLE,
-                suffix,
-                FixedSizeCharset.transfer(file,nf,MUTABLE_CS)
-            );
-        } catch(UncheckedIOException|IOException|SecurityException e) {
+        final FixedSizeCharset cs;
+        try(FileChannel out = FileChannel.open(nf.toPath(),WRITE)) {
+            if(narrow(out)) cs = FixedSizeCharset.Fixed_1;
+            else {
+                handle.transferTo(start,end,out.position(0L));
+                cs = MUTABLE_CS;
+            }
+        } catch(IOException|SecurityException e) {
             try {nf.delete();}
             catch(final SecurityException e1) {}
             throw ioe(e);
         }
+        final long n = size() * cs.size;
+        return new FileSequence(nf,0L,n,n,Mutability.IMMUTABLE,suffix,cs);
+    }
+    @Override
+    public MutableSequence flush() throws UncheckedIOException {
+        try {handle.writes.persist(handle);}
+        catch(final IOException e) {throw ioe(e);}
+        return this;
     }
+    /**
+     * The snapshot shares the file, and each page is only copied once it is
+     * overwritten.
+     */
+    @Override public Sequence snapshot() throws UncheckedIOException {return SnapshotSequence.take(this);}
     @Override
     public MutableSequence shallowCopy() throws UncheckedIOException {
-        return new MutableFileSequence(file,start,end,length,suffix);
+        return new MutableFileSequence(retain(),file,start,end,length,suffix);
     }
 }
\ No newline at end of file
@@ -1,10 +1,11 @@
 package sequence;
 
+import java.util.concurrent.ForkJoinPool;
+
 import java.io.File;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import sequence.FileSequence.Mutability;
 import util.FixedSizeCharset;
@@ -17,6 +18,29 @@ import util.FixedSizeCharset;
  * @see FileSequenceBuilder
  */
 public class MutableFileSequenceBuilder extends FileSequenceBuilder {
+    /**When the characters written to a sequence are made durable by syncing its file.*/
+    public enum Durability {
+        /**The file is never synced.*/
+        NONE,
+        /**The file is synced when the sequence is flushed and when its last view is closed.*/
+        ON_CLOSE,
+        /**Like {@linkplain #ON_CLOSE}, and also at a fixed interval by a background thread.*/
+        PERIODIC,
+        /**
+         * Each write returns once it is durable. Threads which write at the same
+         * time share one sync.
+         */
+        GROUP
+    }
+    /**The default size of the write buffer, in bytes.*/
+    public static final int DEFAULT_WRITE_BUFFER = 1 << 20;
+    /**The default interval between the syncs of {@linkplain Durability#PERIODIC}, in milliseconds.*/
+    public static final long DEFAULT_SYNC_INTERVAL = 1000L;
+    
+    private Durability durability = Durability.NONE;
+    private Integer writeBuffer = null;
+    private Long syncInterval = null;
+    
     public MutableFileSequenceBuilder() {super();}
     public static MutableFileSequenceBuilder builder() {return new MutableFileSequenceBuilder();}
     
@@ -65,40 +89,145 @@ public class MutableFileSequenceBuilder extends FileSequenceBuilder {
         super.charset(cs);
         return this;
     }
+    @Override
+    public MutableFileSequenceBuilder mapped(final boolean mapped) {
+        super.mapped(mapped);
+        return this;
+    }
+    @Override
+    public MutableFileSequenceBuilder blockSize(final Integer block) {
+        super.blockSize(block);
+        return this;
+    }
+    @Override
+    public MutableFileSequenceBuilder parallelism(final Integer parallelism) {
+        super.parallelism(parallelism);
+        return this;
+    }
     
-    FileSequence construct(final File data,
+    @Override
+    public MutableFileSequenceBuilder copy(final boolean copy) {
+        super.copy(copy);
+        return this;
+    }
+    
+    @Override
+    public MutableFileSequenceBuilder indexed(final boolean indexed) {
+        super.indexed(indexed);
+        return this;
+    }
+    
+    @Override
+    public MutableFileSequenceBuilder lazy(final boolean lazy) {
+        super.lazy(lazy);
+        return this;
+    }
+    
+    @Override
+    public MutableFileSequenceBuilder cache(final File cache) {
+        super.cache(cache);
+        return this;
+    }
+    @Override
+    public MutableFileSequenceBuilder cache(final Path cache) {
+        super.cache(cache);
+        return this;
+    }
+    @Override
+    public MutableFileSequenceBuilder cache(final String cache) {
+        super.cache(cache);
+        return this;
+    }
+    @Override
+    public MutableFileSequenceBuilder cacheLimit(final Long cacheLimit) {
+        super.cacheLimit(cacheLimit);
+        return this;
+    }
+    
+    /**
+     * Sets when the characters written to the sequence are synced to its file.
+     * The default is {@linkplain Durability#NONE}.
+     * 
+     * @return <code>this</code>
+     */
+    public MutableFileSequenceBuilder durability(final Durability durability) {
+        this.durability = durability == null? Durability.NONE : durability;
+        return this;
+    }
+    /**
+     * Sets the maximum number of bytes of written characters which are buffered
+     * before they are written to the file, or <code>null</code> to use
+     * {@linkplain #DEFAULT_WRITE_BUFFER}. The buffer is shared by the views of the
+     * sequence, and reads see the characters in it. A size of zero writes each
+     * character to the file at once.
+     * 
+     * @return <code>this</code>
+     */
+    public MutableFileSequenceBuilder writeBuffer(final Integer writeBuffer) {
+        this.writeBuffer = writeBuffer;
+        return this;
+    }
+    /**
+     * Sets the number of milliseconds between the syncs of
+     * {@linkplain Durability#PERIODIC}, or <code>null</code> to use
+     * {@linkplain #DEFAULT_SYNC_INTERVAL}.
+     * 
+     * @return <code>this</code>
+     */
+    public MutableFileSequenceBuilder syncInterval(final Long syncInterval) {
+        this.syncInterval = syncInterval;
+        return this;
+    }
+    
+    @Override Mutability mutability() {return Mutability.MUTABLE;}
+    /**Mutable sequences must not write to the input.*/
+    @Override FixedSizeCharset direct(final File data,final Charset cs) {return null;}
+    @Override boolean utf8(final Charset cs) {return false;}
+    @Override
+    FixedSizeCharset transcode(final File data,final File tmp,final Charset cs,
+                               final ForkJoinPool pool)
+                               throws IOException {
+        FixedSizeCharset.transfer(data,cs,tmp,MutableFileSequence.MUTABLE_CS,pool);
+        return MutableFileSequence.MUTABLE_CS;
+    }
+    @Override
+    FileSequence construct(final File tmp,
                            final long start,
                            final long end,
                            final long length,
-                           final Charset cs)
-                           throws IOException,SecurityException {
-        final String suffix = data.getName();
-        final File tmp = Files.createTempFile(
-            MutableFileSequence.TMP_DIR.toPath(),
-            null,
-            ".%s.%s".formatted(Mutability.MUTABLE.toString(),suffix)
-        ).toFile();
-        tmp.deleteOnExit();
-        try {
-            FixedSizeCharset.transfer(data,cs,tmp,MutableFileSequence.MUTABLE_CS);
-            return new MutableFileSequence(
-                tmp,
-                start << 1,
-                end << 1,
-                length << 1,
-                suffix
-            );
-        } catch(UncheckedIOException|IOException e) {
-            try {tmp.delete();}
-            catch(final SecurityException e1) {}
-            if(e instanceof UncheckedIOException)
-                throw ((UncheckedIOException)e).getCause();
-            throw e;
-        }
+                           final String suffix,
+                           final FixedSizeCharset cs)
+                           throws UncheckedIOException {
+        return new MutableFileSequence(
+            tmp,
+            start << 1,
+            end << 1,
+            length << 1,
+            suffix,
+            new WriteBehind(
+                durability,
+                writeBuffer == null? DEFAULT_WRITE_BUFFER : writeBuffer,
+                syncInterval == null? DEFAULT_SYNC_INTERVAL : syncInterval
+            )
+        );
     }
+    /**
+     * @throws IllegalArgumentException The write buffer is negative or the sync
+     *                                  interval is not positive.
+     */
     @Override
     public MutableSequence build() throws IllegalArgumentException,
                                           UncheckedIOException {
+        if(writeBuffer != null && writeBuffer < 0)
+            throw new IllegalArgumentException(
+                "Negative write buffer %d."
+                .formatted(writeBuffer)
+            );
+        if(syncInterval != null && syncInterval <= 0L)
+            throw new IllegalArgumentException(
+                "Sync interval %d is not positive."
+                .formatted(syncInterval)
+            );
         return (MutableSequence)super.build();
     }
 }
\ No newline at end of file
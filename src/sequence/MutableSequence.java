@@ -126,6 +126,24 @@ public interface MutableSequence extends Sequence {
      */
     MutableSequence mutableSubSequence(long start,long end) throws IndexOutOfBoundsException,
                                                                    UncheckedIOException;
+    /**
+     * Creates an immutable sequence which holds the characters of this sequence
+     * as they are now. Later writes to this sequence or to its views are not
+     * visible through the snapshot.
+     * 
+     * @implSpec The default implementation returns {@linkplain #immutableCopy()}.
+     */
+    default Sequence snapshot() throws UncheckedIOException {return immutableCopy();}
+    /**
+     * Writes the characters which are buffered by this sequence to its storage,
+     * and syncs the storage if the sequence was built to be durable.
+     * 
+     * @return <code>this</code>
+     * 
+     * @implSpec The default implementation does nothing, for sequences which do
+     *           not buffer their writes.
+     */
+    default MutableSequence flush() throws UncheckedIOException {return this;}
     
     /**
      * A {@linkplain SequenceIterator} with added functionality to modify its base
@@ -0,0 +1,221 @@
+package sequence;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * A process-wide cache of decoded pages of the files which back
+ * {@linkplain FileSequence}s and {@linkplain MutableFileSequence}s. Pages are
+ * keyed by file, so every sequence which reads the same file shares them, and
+ * they are used by the <code>charAt</code> methods of these sequences.
+ * <p>
+ * The cache holds at most {@linkplain #budget()} bytes of characters, and
+ * evicts the pages which have not been used recently with the CLOCK algorithm.
+ * The initial budget can be set with the system property
+ * <code>sequence.pageCache</code>, in bytes. A budget of zero disables the
+ * cache.
+ * 
+ * @author AzureTriple
+ * 
+ * @implNote Writes to mutable sequences update the cached pages, and the pages
+ *           of a file are dropped once the last sequence which reads it is
+ *           closed. Memory-mapped sequences do not use the cache.
+ */
+public final class PageCache {
+    private PageCache() {}
+    
+    /**Each page holds <code>2^PAGE_SCALAR</code> characters.*/
+    static final int PAGE_SCALAR = 10;
+    static final int PAGE_SIZE = 1 << PAGE_SCALAR,
+                     PAGE_MASK = PAGE_SIZE - 1;
+    /**The default budget, in bytes.*/
+    public static final long DEFAULT_BUDGET = 32L << 20;
+    
+    /**
+     * @param file  The absolute path of the file, so that every path to it finds
+     *              the same pages.
+     * @param width The number of bytes per character in the file, or zero if it
+     *              varies.
+     */
+    private static record Key(File file,int width,long page) {
+        static Key of(final File file,final int width,final long page) {
+            return new Key(absolute(file),width,page);
+        }
+        /**@return The index of the stamp which counts the writes to the page.*/
+        int stamp() {return hashCode() & STAMP_MASK;}
+    }
+    private static File absolute(final File file) {return file.isAbsolute()? file : file.getAbsoluteFile();}
+    private static final class Page {
+        final Key key;
+        final char[] data;
+        /**Cleared by the clock hand, which evicts the page if it is still clear on the next pass.*/
+        volatile boolean referenced = true;
+        
+        Page(final Key key,final char[] data) {
+            this.key = key;
+            this.data = data;
+        }
+        long weight() {return (long)data.length * Character.BYTES;}
+    }
+    
+    private static final ConcurrentHashMap<Key,Page> PAGES = new ConcurrentHashMap<>();
+    /**
+     * Counts the writes to the pages whose keys hash to each index, whether or
+     * not the pages are cached. A page which was written while it was loaded is
+     * not cached, since it may hold the characters from before the write.
+     */
+    private static final AtomicLongArray STAMPS = new AtomicLongArray(256);
+    private static final int STAMP_MASK = STAMPS.length() - 1;
+    /**The number of bytes held by the pages in the cache.*/
+    private static final AtomicLong USED = new AtomicLong();
+    private static final LongAdder HITS = new LongAdder(),
+                                   MISSES = new LongAdder(),
+                                   EVICTIONS = new LongAdder();
+    private static volatile long budget = Math.max(0L,Long.getLong("sequence.pageCache",DEFAULT_BUDGET));
+    /**The hand of the clock, which is only moved while holding the lock of this class.*/
+    private static Iterator<Page> hand = PAGES.values().iterator();
+    
+    /**@return The maximum number of bytes held by the cache.*/
+    public static long budget() {return budget;}
+    /**
+     * Sets the maximum number of bytes held by the cache, evicting pages if it is
+     * exceeded. A budget of zero disables the cache.
+     * 
+     * @throws IllegalArgumentException The budget is negative.
+     */
+    public static void budget(final long bytes) throws IllegalArgumentException {
+        if(bytes < 0L)
+            throw new IllegalArgumentException(
+                "Negative budget %d."
+                .formatted(bytes)
+            );
+        budget = bytes;
+        evict();
+    }
+    /**@return The number of bytes held by the cache.*/
+    public static long size() {return USED.get();}
+    /**@return The number of reads which found their page in the cache.*/
+    public static long hits() {return HITS.sum();}
+    /**@return The number of reads which had to load their page from the file.*/
+    public static long misses() {return MISSES.sum();}
+    /**@return The number of pages which were evicted to stay within the budget.*/
+    public static long evictions() {return EVICTIONS.sum();}
+    /**Removes every page from the cache. The counters are not reset.*/
+    public static void clear() {
+        for(final Page p : PAGES.values()) remove(p);
+    }
+    
+    private static void remove(final Page p) {
+        if(PAGES.remove(p.key,p)) USED.addAndGet(-p.weight());
+    }
+    /**Evicts pages until the cache is within its budget.*/
+    private static synchronized void evict() {
+        while(USED.get() > budget) {
+            if(!hand.hasNext() && !(hand = PAGES.values().iterator()).hasNext()) return;
+            final Page p = hand.next();
+            if(p.referenced) p.referenced = false;
+            else if(PAGES.remove(p.key,p)) {
+                USED.addAndGet(-p.weight());
+                EVICTIONS.increment();
+            }
+        }
+    }
+    
+    /**
+     * @param page The index of the page in the file of the sequence.
+     * 
+     * @return The characters of the page, which is loaded from the sequence if it
+     *         is not cached, or <code>null</code> if the cache is disabled.
+     */
+    static char[] get(final FileSequence fs,final long page) throws IOException {
+        if(budget == 0L) return null;
+        final Key key = Key.of(fs.file,fs.width(),page);
+        final Page cached = PAGES.get(key);
+        if(cached != null) {
+            cached.referenced = true;
+            HITS.increment();
+            return cached.data;
+        }
+        MISSES.increment();
+        final long stamp = STAMPS.get(key.stamp());
+        final Page p = new Page(key,fs.page(page));
+        final Page prev = PAGES.putIfAbsent(key,p);
+        if(prev != null) return prev.data;
+        USED.addAndGet(p.weight());
+        // A write which missed the page while it was loaded bumped the stamp.
+        if(STAMPS.get(key.stamp()) != stamp) remove(p);
+        else if(USED.get() > budget) evict();
+        return p.data;
+    }
+    /**
+     * @param page The index of the page in the file of the sequence.
+     * 
+     * @return The characters of the page, or <code>null</code> if it is not
+     *         cached. Unlike {@linkplain #get}, a miss does not load the page.
+     */
+    static char[] peek(final FileSequence fs,final long page) {
+        if(budget == 0L) return null;
+        final Page cached = PAGES.get(Key.of(fs.file,fs.width(),page));
+        if(cached == null) return null;
+        cached.referenced = true;
+        HITS.increment();
+        return cached.data;
+    }
+    /**
+     * Copies characters which were written to a file into its cached pages. This
+     * is called after the characters are written, so that pages which are being
+     * loaded are not cached with the characters from before the write.
+     * 
+     * @param width The number of bytes per character in the file.
+     * @param index The index in the file of the first character.
+     */
+    static void update(final File file,final int width,long index,final char[] src,int off,int len) {
+        while(len != 0) {
+            final int o = (int)(index & PAGE_MASK),
+                      n = Math.min(len,PAGE_SIZE - o);
+            final Page p = written(Key.of(file,width,index >>> PAGE_SCALAR));
+            if(p != null && o < p.data.length)
+                System.arraycopy(src,off,p.data,o,Math.min(n,p.data.length - o));
+            index += n;
+            off += n;
+            len -= n;
+        }
+    }
+    /**
+     * Same as {@linkplain #update(File,int,long,char[],int,int)}, but reads the
+     * characters from the remaining bytes of the buffer with two bytes each.
+     */
+    static void update(final File file,final int width,long index,final ByteBuffer src) {
+        final CharBuffer c = src.asCharBuffer();
+        for(int off = 0,len = c.remaining();len != 0;) {
+            final int o = (int)(index & PAGE_MASK),
+                      n = Math.min(len,PAGE_SIZE - o);
+            final Page p = written(Key.of(file,width,index >>> PAGE_SCALAR));
+            if(p != null && o < p.data.length)
+                c.get(off,p.data,o,Math.min(n,p.data.length - o));
+            index += n;
+            off += n;
+            len -= n;
+        }
+    }
+    /**@return The cached page which was written, after counting the write.*/
+    private static Page written(final Key key) {
+        STAMPS.incrementAndGet(key.stamp());
+        return PAGES.get(key);
+    }
+    /**Removes every page of the file from the cache.*/
+    static void invalidate(File file) {
+        file = absolute(file);
+        for(final Page p : PAGES.values())
+            if(p.key.file().equals(file))
+                remove(p);
+    }
+}
\ No newline at end of file
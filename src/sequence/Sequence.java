@@ -1,10 +1,15 @@
 package sequence;
 
+import static java.lang.Math.min;
+
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 
 import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
 import util.NoIO;
 
 /**
@@ -17,6 +22,19 @@ public interface Sequence extends CharSequence,
                                   Comparable<CharSequence>,
                                   Iterable<Character>,
                                   AutoCloseable {
+    /**
+     * The value returned by the primitive iteration methods when there is no
+     * character to return. Since every character is non-negative when widened to
+     * an <code>int</code>, this never collides with a real character.
+     */
+    int EOS = -1;
+    /**
+     * A consumer of primitive characters, used to traverse a sequence without
+     * boxing each character.
+     */
+    @FunctionalInterface
+    interface CharConsumer {void accept(char c);}
+    
     /**
      * An iterator which traverses the characters in a {@linkplain Sequence}.
      * <p>
@@ -45,7 +63,28 @@ public interface Sequence extends CharSequence,
          */
         @Override boolean hasNext() throws UncheckedIOException;
         @Override Character next() throws NoSuchElementException,UncheckedIOException;
+        /**
+         * Same as {@linkplain #next()}, but does not box the character.
+         * 
+         * @return The next character, or {@linkplain Sequence#EOS} if the end is
+         *         reached.
+         * 
+         * @implSpec The default implementation boxes the character and should be
+         *           overridden.
+         */
+        default int nextChar() throws UncheckedIOException {return hasNext()? next() : EOS;}
         @Override void forEachRemaining(Consumer<? super Character> action) throws UncheckedIOException;
+        /**
+         * Same as {@linkplain #forEachRemaining(Consumer)}, but does not box the
+         * characters.
+         * 
+         * @implSpec The default implementation boxes the characters and should be
+         *           overridden.
+         */
+        default void forEachChar(final CharConsumer action) throws UncheckedIOException {
+            if(action == null) return;
+            while(hasNext()) action.accept(next());
+        }
         @Override default void close() throws UncheckedIOException {}
     }
     /**
@@ -92,6 +131,20 @@ public interface Sequence extends CharSequence,
          *         sequence.
          */
         Character peek(long offset) throws UncheckedIOException;
+        /**
+         * Same as {@linkplain #peek()}, but does not box the character.
+         * 
+         * @return The value at the cursor without advancing, or
+         *         {@linkplain Sequence#EOS} if the cursor is at the end of the
+         *         sequence.
+         * 
+         * @implSpec The default implementation boxes the character and should be
+         *           overridden.
+         */
+        default int peekChar() throws UncheckedIOException {
+            final Character c = peek();
+            return c == null? EOS : c;
+        }
         
         /**
          * @return The next element in the iteration, or <code>null</code> if the end is
@@ -100,6 +153,28 @@ public interface Sequence extends CharSequence,
          * @see java.util.Iterator#next()
          */
         @Override Character next() throws UncheckedIOException;
+        /**
+         * Same as {@linkplain #next()}, but does not box the character.
+         * 
+         * @return The next character, or {@linkplain Sequence#EOS} if the end is
+         *         reached.
+         * 
+         * @implSpec The default implementation boxes the character and should be
+         *           overridden.
+         */
+        default int nextChar() throws UncheckedIOException {
+            final Character c = next();
+            return c == null? EOS : c;
+        }
+        /**
+         * Passes each remaining character to the consumer without boxing it.
+         * 
+         * @see java.util.Iterator#forEachRemaining(Consumer)
+         */
+        default void forEachChar(final CharConsumer action) throws UncheckedIOException {
+            if(action == null) return;
+            for(int c;(c = nextChar()) != EOS;) action.accept((char)c);
+        }
         
         /**
          * @return The closest non-whitespace character, or <code>null</code> if the end
@@ -320,6 +395,15 @@ public interface Sequence extends CharSequence,
      */
     SequenceIterator reverseIterator() throws UncheckedIOException;
     
+    /**
+     * Passes each character in this sequence to the consumer without boxing it.
+     * 
+     * @see java.lang.Iterable#forEach(Consumer)
+     */
+    default void forEachChar(final CharConsumer action) throws UncheckedIOException {
+        try(SimpleSequenceIterator i = iterator()) {i.forEachChar(action);}
+    }
+    
     /**
      * @return The number of characters in the sequence. This method is a cheap hack
      *         to get around the {@linkplain CharSequence} interface's
@@ -366,14 +450,14 @@ public interface Sequence extends CharSequence,
             if(o instanceof Sequence) {
                 try(SimpleSequenceIterator b = ((Sequence)o).iterator()) {
                     while(a.hasNext() && b.hasNext()) {
-                        final int diff = Character.compare(a.next(),b.next());
+                        final int diff = a.nextChar() - b.nextChar();
                         if(diff != 0) return diff;
                     }
                 }
                 oSize = ((Sequence)o).size();
             } else {
                 for(int i = 0;a.hasNext() && i < o.length();++i) {
-                    final int diff = Character.compare(a.next(),o.charAt(i));
+                    final int diff = a.nextChar() - o.charAt(i);
                     if(diff != 0) return diff;
                 }
                 oSize = o.length();
@@ -431,6 +515,121 @@ public interface Sequence extends CharSequence,
      */
     Sequence copyTo(char[] arr,int offset) throws IllegalArgumentException,
                                                   UncheckedIOException;
+    /**
+     * Copies the characters starting at the specified index to a region of the
+     * array, stopping early if the end of this sequence is reached.
+     * 
+     * @param srcStart An index in the range <code>[-size(),size()]</code>.
+     *                 Negative values are wrapped to the end by adding to
+     *                 <code>size()</code>.
+     * @param dst      A character array to hold the characters.
+     * @param off      The index in the array of the first character.
+     * @param len      The maximum number of characters to copy.
+     * 
+     * @return The number of characters copied.
+     * 
+     * @throws IndexOutOfBoundsException <code>|srcStart| &gt; size()</code> or the
+     *                                   region is outside the array.
+     * 
+     * @implSpec The default implementation copies one character at a time and
+     *           should be overridden.
+     */
+    default int read(long srcStart,final char[] dst,final int off,final int len)
+                     throws IndexOutOfBoundsException,UncheckedIOException {
+        Objects.checkFromIndexSize(off,len,dst.length);
+        final long size = size();
+        if(size < srcStart || srcStart < 0L && (srcStart += size) < 0L)
+            throw new IndexOutOfBoundsException(
+                "%d is outside the range [0,%d]."
+                .formatted(srcStart,size)
+            );
+        final int n = (int)min(len,size - srcStart);
+        for(int i = 0;i < n;++i) dst[off + i] = charAt(srcStart + i);
+        return n;
+    }
+    /**
+     * Copies the characters starting at the specified index to the remaining
+     * space in the buffer, stopping early if the end of this sequence is reached.
+     * The position of the buffer is advanced by the number of characters copied.
+     * 
+     * @param srcStart An index in the range <code>[-size(),size()]</code>.
+     *                 Negative values are wrapped to the end by adding to
+     *                 <code>size()</code>.
+     * 
+     * @return The number of characters copied.
+     * 
+     * @throws IndexOutOfBoundsException <code>|srcStart| &gt; size()</code>
+     * 
+     * @see #read(long,char[],int,int)
+     */
+    default int read(long srcStart,final CharBuffer dst) throws IndexOutOfBoundsException,
+                                                                UncheckedIOException {
+        if(dst.hasArray()) {
+            final int p = dst.position();
+            final int n = read(srcStart,dst.array(),dst.arrayOffset() + p,dst.remaining());
+            dst.position(p + n);
+            return n;
+        }
+        // Copy through a small array when the buffer is direct or read-only.
+        if(srcStart < 0L) srcStart += size();
+        final char[] tmp = new char[min(dst.remaining(),1 << 13)];
+        int total = 0,n;
+        do {
+            n = read(srcStart + total,tmp,0,min(tmp.length,dst.remaining()));
+            dst.put(tmp,0,n);
+            total += n;
+        } while(n != 0 && dst.hasRemaining());
+        return total;
+    }
+    /**
+     * Same as {@linkplain #charAt(long)}, except the character is returned
+     * through a future instead of blocking the calling thread until it is read.
+     * An invalid index or a failed read completes the future exceptionally.
+     * 
+     * @implSpec The default implementation reads the character on the calling
+     *           thread and returns a completed future. Types which read from
+     *           files should override this.
+     */
+    default CompletableFuture<Character> charAtAsync(final long index) {
+        try {return CompletableFuture.completedFuture(charAt(index));}
+        catch(final RuntimeException e) {return CompletableFuture.failedFuture(e);}
+    }
+    /**
+     * Same as {@linkplain #read(long,CharBuffer)}, except the number of
+     * characters copied is returned through a future. The buffer should not be
+     * used until the future completes, after which its position has been
+     * advanced by the number of characters copied.
+     * 
+     * @implSpec The default implementation copies the characters on the calling
+     *           thread and returns a completed future.
+     */
+    default CompletableFuture<Integer> readAsync(final long srcStart,final CharBuffer dst) {
+        try {return CompletableFuture.completedFuture(read(srcStart,dst));}
+        catch(final RuntimeException e) {return CompletableFuture.failedFuture(e);}
+    }
+    /**
+     * Same as {@linkplain #toString()}, except the string is returned through a
+     * future.
+     * 
+     * @implSpec The default implementation creates the string on the calling
+     *           thread and returns a completed future.
+     */
+    default CompletableFuture<String> toStringAsync() {
+        try {return CompletableFuture.completedFuture(toString());}
+        catch(final RuntimeException e) {return CompletableFuture.failedFuture(e);}
+    }
+    /**
+     * Same as {@linkplain #copyTo(char[],int)}, except this sequence is returned
+     * through a future once the characters have been copied. The array should
+     * not be read until the future completes.
+     * 
+     * @implSpec The default implementation copies the characters on the calling
+     *           thread and returns a completed future.
+     */
+    default CompletableFuture<Sequence> copyToAsync(final char[] arr,final int offset) {
+        try {return CompletableFuture.completedFuture(copyTo(arr,offset));}
+        catch(final RuntimeException e) {return CompletableFuture.failedFuture(e);}
+    }
     /**Creates a mutable copy of this sequence as a {@linkplain MutableSequence}.*/
     MutableSequence mutableCopy() throws UncheckedIOException;
     /**Creates an immutable copy of this sequence.*/
@@ -568,8 +767,11 @@ public interface Sequence extends CharSequence,
             @NoIO @Override public Character peek(final int offset) {return null;}
             @NoIO @Override public Character peek(final long offset) {return null;}
             
+            @NoIO @Override public int peekChar() {return EOS;}
+            
             @Override public boolean hasNext() {return false;}
             @NoIO @Override public Character next() {return null;}
+            @NoIO @Override public int nextChar() {return EOS;}
             
             @NoIO @Override public Character skipWS() {return null;}
             @NoIO @Override public Character skipWS(final int limit) {return null;}
@@ -631,6 +833,7 @@ public interface Sequence extends CharSequence,
             }
             
             @NoIO @Override public void forEachRemaining(final Consumer<? super Character> action) {}
+            @NoIO @Override public void forEachChar(final CharConsumer action) {}
             @NoIO @Override public void close() {}
         }
         final EMPTYITR ITER = new EMPTYITR();
@@ -651,6 +854,7 @@ public interface Sequence extends CharSequence,
     static ArraySequenceBuilder arraySequenceBuilder() {return new ArraySequenceBuilder();}
     static FileSequenceBuilder fileSequenceBuilder() {return new FileSequenceBuilder();}
     static CompoundSequenceBuilder compoundSequenceBuilder() {return new CompoundSequenceBuilder();}
+    static TieredSequenceBuilder tieredSequenceBuilder() {return new TieredSequenceBuilder();}
     
     static MutableArraySequenceBuilder mutableArraySequenceBuilder() {return new MutableArraySequenceBuilder();}
     static MutableFileSequenceBuilder mutableFileSequenceBuilder() {return new MutableFileSequenceBuilder();}
@@ -0,0 +1,182 @@
+package sequence;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static sequence.PageCache.PAGE_SCALAR;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+
+/**
+ * An immutable view of a {@linkplain MutableFileSequence} as it was when the
+ * snapshot was taken. The snapshot reads the same file as its source, so taking
+ * it copies nothing; instead, each page in its range is copied to a temporary
+ * file the first time it is overwritten, and the snapshot reads that copy from
+ * then on.
+ * 
+ * @author AzureTriple
+ * 
+ * @implNote The saved pages are kept until the snapshot and all of its views
+ *           are closed. Snapshots read around the {@linkplain PageCache}, whose
+ *           pages follow the writes to the file.
+ */
+final class SnapshotSequence extends FileSequence {
+    /**The number of bytes in each page which is saved before it is overwritten.*/
+    static final int PAGE_BYTES = MutableFileSequence.M_SCALAR << PAGE_SCALAR,
+                     PAGE_SHIFT = Integer.numberOfTrailingZeros(PAGE_BYTES);
+    
+    /**
+     * The handle of a snapshot, which reads the pages that were overwritten after
+     * the snapshot was taken from the temporary file they were saved to.
+     */
+    static final class Shadow extends Handle {
+        /**The handle through which the source sequence writes to the file.*/
+        final Handle source;
+        /**The range of bytes of the file which the snapshot can read.*/
+        final long start,end;
+        final File store;
+        final FileChannel saved;
+        /**The position in the store of each page which was saved.*/
+        final ConcurrentHashMap<Long,Long> pages = new ConcurrentHashMap<>();
+        /**The number of bytes in the store.*/
+        long size = 0L;
+        
+        Shadow(final Handle source,final File store,final long start,final long end) throws IOException {
+            super(source.file,Mutability.IMMUTABLE);
+            this.source = source;
+            this.store = store;
+            this.start = start;
+            this.end = end;
+            try {saved = FileChannel.open(store.toPath(),READ,WRITE);}
+            catch(final IOException e) {
+                closeChannels();
+                throw e;
+            }
+            try {source.snapshot(this);}
+            catch(final IOException e) {
+                try {saved.close();}
+                finally {closeChannels();}
+                throw e;
+            }
+        }
+        
+        /**
+         * Saves the pages of the snapshot which overlap the range
+         * <code>[from,to)</code> of the file and have not been saved yet. This is
+         * called before the range of the file is overwritten, which happens when
+         * the write buffer of the source is flushed.
+         */
+        synchronized void preserve(final long from,final long to) throws IOException {
+            final long lo = max(from,start),hi = min(to,end);
+            if(lo >= hi || refs.get() == 0) return;
+            ByteBuffer buf = null;
+            for(long p = lo >>> PAGE_SHIFT;p <= hi - 1 >>> PAGE_SHIFT;++p) {
+                if(pages.containsKey(p)) continue;
+                if(buf == null) buf = ByteBuffer.allocate(PAGE_BYTES);
+                super.read(buf.clear(),p << PAGE_SHIFT);
+                for(buf.flip();buf.hasRemaining();) saved.write(buf,size + buf.position());
+                pages.put(p,size);
+                size += PAGE_BYTES;
+            }
+        }
+        /**
+         * Reads the saved copy of each page which was overwritten, and the file
+         * for the others.
+         */
+        @Override
+        int read(final ByteBuffer dst,long pos) throws IOException {
+            final int first = dst.position(),limit = dst.limit();
+            try {
+                while(dst.hasRemaining()) {
+                    final long page = pos >>> PAGE_SHIFT;
+                    final int p = dst.position(),
+                              n = (int)min(dst.remaining(),PAGE_BYTES - (pos & PAGE_BYTES - 1));
+                    dst.limit(p + n);
+                    Long at = pages.get(page);
+                    if(at == null) {
+                        super.read(dst,pos);
+                        // The page is saved before it is written, so the read may
+                        // have seen new bytes iff the page is saved now.
+                        if((at = pages.get(page)) != null) dst.position(p);
+                    }
+                    if(at != null)
+                        for(long i = at + (pos & PAGE_BYTES - 1);dst.hasRemaining();) {
+                            final int r = saved.read(dst,i);
+                            if(r < 0) throw new EOFException();
+                            i += r;
+                        }
+                    if(dst.position() != p + n) break;
+                    dst.limit(limit);
+                    pos += n;
+                }
+            } finally {dst.limit(limit);}
+            return dst.position() - first;
+        }
+        /**Discards the saved pages without dropping the cached pages of the file.*/
+        @Override
+        void close() throws IOException {
+            source.snapshots.remove(this);
+            synchronized(this) {
+                pages.clear();
+                try {
+                    try {saved.close();}
+                    finally {closeChannels();}
+                } finally {store.delete();}
+            }
+        }
+    }
+    
+    /**@param handle A handle which has been retained for this sequence.*/
+    private SnapshotSequence(final Shadow handle,final long start,final long end,final String suffix) {
+        super(handle,handle.file,start,end,end - start,Mutability.IMMUTABLE,suffix,MutableFileSequence.MUTABLE_CS);
+    }
+    
+    /**Takes a snapshot of the characters of the sequence as they are now.*/
+    static SnapshotSequence take(final MutableFileSequence src) throws UncheckedIOException {
+        final File store = src.tmpFile(Mutability.IMMUTABLE);
+        try {
+            return new SnapshotSequence(
+                new Shadow(src.handle,store,src.start,src.end),
+                src.start,src.end,
+                src.suffix
+            );
+        } catch(IOException|SecurityException e) {
+            try {store.delete();}
+            catch(final SecurityException e1) {}
+            throw ioe(e);
+        }
+    }
+    
+    /**A closed snapshot cannot be opened again, since the pages it saved are gone.*/
+    @Override
+    Handle retain() throws UncheckedIOException {
+        if(!handle.retain()) throw ioe(new ClosedChannelException());
+        return handle;
+    }
+    @Override
+    FileSequence share(final long start,final long end) throws UncheckedIOException {
+        final SnapshotSequence out = new SnapshotSequence((Shadow)retain(),start,end,suffix);
+        out.block = block;
+        return out;
+    }
+    @Override
+    char read(final long i) throws IOException {
+        final ByteBuffer b = ByteBuffer.allocate(MutableFileSequence.M_SCALAR);
+        handle.readFully(b,i);
+        return b.getChar(0);
+    }
+    /**Asynchronous reads would not see the saved pages.*/
+    @Override boolean async() {return false;}
+    
+    /**The bytes cannot be transferred from the file, since some of them may have been overwritten.*/
+    @Override public MutableSequence mutableCopy() throws UncheckedIOException {return widenedCopy();}
+}
\ No newline at end of file
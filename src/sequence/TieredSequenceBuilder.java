@@ -0,0 +1,350 @@
+package sequence;
+
+import static sequence.Sequence.EMPTY;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A builder which chooses the storage of an immutable sequence from the size of
+ * its input file. Inputs of at most {@linkplain #heapLimit(Long)} bytes are
+ * decoded into an {@linkplain ArraySequence}, inputs of at most
+ * {@linkplain #offHeapLimit(Long)} bytes are decoded into direct memory, and
+ * larger inputs are transcoded into a file by a {@linkplain FileSequenceBuilder}.
+ * <p>
+ * The memory held by the first two tiers is charged to process-wide budgets,
+ * which can be set with {@linkplain #heapBudget(long)} and
+ * {@linkplain #offHeapBudget(long)} or with the system properties
+ * <code>sequence.heapBudget</code> and <code>sequence.offHeapBudget</code>, in
+ * bytes. When a budget cannot hold an input, the input spills to the next tier,
+ * and the memory is returned to the budget once the sequence and all of its
+ * views are garbage collected, so later inputs are promoted back to the faster
+ * tiers.
+ * 
+ * @author AzureTriple
+ */
+public class TieredSequenceBuilder implements SequenceBuilder {
+    public TieredSequenceBuilder() {}
+    public static TieredSequenceBuilder builder() {return new TieredSequenceBuilder();}
+    
+    /**The storage of a sequence.*/
+    public static enum Tier {
+        /**An array of characters on the heap.*/
+        HEAP,
+        /**A direct buffer outside of the heap.*/
+        OFF_HEAP,
+        /**A file which holds a fixed number of bytes per character.*/
+        FILE;
+    }
+    
+    /**A process-wide number of bytes which can be held by the sequences of one tier.*/
+    static final class Budget {
+        final AtomicLong used = new AtomicLong();
+        volatile long limit;
+        
+        Budget(final String property,final long limit) {
+            this.limit = Math.max(0L,Long.getLong(property,limit));
+        }
+        
+        /**@return <code>true</code> iff the bytes fit in the budget and were charged to it.*/
+        boolean reserve(final long bytes) {
+            for(long u;(u = used.get()) + bytes <= limit;)
+                if(used.compareAndSet(u,u + bytes))
+                    return true;
+            return false;
+        }
+        void release(final long bytes) {used.addAndGet(-bytes);}
+        /**Releases the bytes once the object which holds them is garbage collected.*/
+        void track(final Object storage,final long bytes) {
+            CleaningUtil.register(storage,() -> release(bytes));
+        }
+    }
+    /**The default size of the largest input which is held on the heap, in bytes.*/
+    public static final long DEFAULT_HEAP_LIMIT = 1L << 20;
+    /**The default size of the largest input which is held in direct memory, in bytes.*/
+    public static final long DEFAULT_OFF_HEAP_LIMIT = 64L << 20;
+    /**The default budget of the heap tier, in bytes.*/
+    public static final long DEFAULT_HEAP_BUDGET = 64L << 20;
+    /**The default budget of the off-heap tier, in bytes.*/
+    public static final long DEFAULT_OFF_HEAP_BUDGET = 256L << 20;
+    static final Budget HEAP = new Budget("sequence.heapBudget",DEFAULT_HEAP_BUDGET),
+                        OFF_HEAP = new Budget("sequence.offHeapBudget",DEFAULT_OFF_HEAP_BUDGET);
+    
+    /**@return The maximum number of bytes held by the sequences on the heap.*/
+    public static long heapBudget() {return HEAP.limit;}
+    /**@return The maximum number of bytes held by the sequences in direct memory.*/
+    public static long offHeapBudget() {return OFF_HEAP.limit;}
+    /**
+     * Sets the maximum number of bytes held by the sequences on the heap. Lowering
+     * the budget does not move the sequences which were already built.
+     * 
+     * @throws IllegalArgumentException The budget is negative.
+     */
+    public static void heapBudget(final long bytes) throws IllegalArgumentException {
+        HEAP.limit = checkBudget(bytes);
+    }
+    /**
+     * Sets the maximum number of bytes held by the sequences in direct memory.
+     * Lowering the budget does not move the sequences which were already built.
+     * 
+     * @throws IllegalArgumentException The budget is negative.
+     */
+    public static void offHeapBudget(final long bytes) throws IllegalArgumentException {
+        OFF_HEAP.limit = checkBudget(bytes);
+    }
+    private static long checkBudget(final long bytes) throws IllegalArgumentException {
+        if(bytes < 0L)
+            throw new IllegalArgumentException(
+                "Negative budget %d."
+                .formatted(bytes)
+            );
+        return bytes;
+    }
+    /**@return The number of bytes held by the sequences on the heap.*/
+    public static long heapUsed() {return HEAP.used.get();}
+    /**@return The number of bytes held by the sequences in direct memory.*/
+    public static long offHeapUsed() {return OFF_HEAP.used.get();}
+    
+    private File data = null;
+    private Long start = null,end = null,length = null;
+    private Charset cs = null;
+    private Long heapLimit = null,offHeapLimit = null;
+    private Tier tier = null;
+    
+    /**
+     * Sets the data of this sequence to hold the contents of the specified file.
+     * 
+     * @return <code>this</code>
+     */
+    public TieredSequenceBuilder data(final File data) {
+        this.data = data;
+        return this;
+    }
+    /**
+     * Sets the data of this sequence to hold the contents of the specified file.
+     * 
+     * @return <code>this</code>
+     */
+    public TieredSequenceBuilder data(final Path data) {
+        this.data = data == null? null : data.toFile();
+        return this;
+    }
+    /**
+     * Sets the data of this sequence to hold the contents of the specified file.
+     * 
+     * @return <code>this</code>
+     */
+    public TieredSequenceBuilder data(final String data) {
+        this.data = data == null? null : new File(data);
+        return this;
+    }
+    /**
+     * Sets the index of the first character in the sequence. This number can be
+     * negative, in which case the index will be set relative to the last index
+     * (inclusive), or <code>null</code> to use the default value.
+     * 
+     * @return <code>this</code>
+     */
+    public TieredSequenceBuilder start(final Long start) {
+        this.start = start;
+        return this;
+    }
+    /**
+     * Sets the index of the last character in the sequence, exclusive. This number
+     * can be negative, in which case the index will be set relative to the last
+     * index (inclusive), or <code>null</code> to use the default value. This method
+     * clears the <code>length</code> value.
+     * 
+     * @return <code>this</code>
+     */
+    public TieredSequenceBuilder end(final Long end) {
+        this.end = end;
+        length = null;
+        return this;
+    }
+    /**
+     * Sets the length of the sequence. This method clears the <code>end</code>
+     * value.
+     * 
+     * @return <code>this</code>
+     */
+    public TieredSequenceBuilder length(final Long length) {
+        this.length = length;
+        end = null;
+        return this;
+    }
+    /**
+     * A convenience method to set both the <code>start</code> and <code>end</code>
+     * indices. This method clears the <code>length</code> value.
+     * 
+     * @param start {@linkplain #start(Long)}
+     * @param end   {@linkplain #end(Long)}
+     * 
+     * @return <code>this</code>
+     */
+    public TieredSequenceBuilder range(final Long start,final Long end) {
+        this.start = start;
+        this.end = end;
+        length = null;
+        return this;
+    }
+    /**
+     * A convenience method to set both the <code>start</code> and
+     * <code>length</code> indices. This method clears the <code>end</code> value.
+     * 
+     * @param offset {@linkplain #start(Long)}
+     * @param length {@linkplain #length(Long)}
+     * 
+     * @return <code>this</code>
+     */
+    public TieredSequenceBuilder offset(final Long offset,final Long length) {
+        start = offset;
+        this.length = length;
+        end = null;
+        return this;
+    }
+    /**
+     * Sets the charset used to decode the input file.
+     * 
+     * @return <code>this</code>
+     */
+    public TieredSequenceBuilder charset(final Charset cs) {
+        this.cs = cs;
+        return this;
+    }
+    /**
+     * Sets the size in bytes of the largest input which is held on the heap, or
+     * <code>null</code> to use {@linkplain #DEFAULT_HEAP_LIMIT}.
+     * 
+     * @return <code>this</code>
+     */
+    public TieredSequenceBuilder heapLimit(final Long heapLimit) {
+        this.heapLimit = heapLimit;
+        return this;
+    }
+    /**
+     * Sets the size in bytes of the largest input which is held in direct memory,
+     * or <code>null</code> to use {@linkplain #DEFAULT_OFF_HEAP_LIMIT}. Inputs
+     * which could hold more than 512M characters are always transcoded into a
+     * file.
+     * 
+     * @return <code>this</code>
+     */
+    public TieredSequenceBuilder offHeapLimit(final Long offHeapLimit) {
+        this.offHeapLimit = offHeapLimit;
+        return this;
+    }
+    /**
+     * @return The tier of the sequence created by the last call to
+     *         {@linkplain #build()}, or <code>null</code> if it did not create a
+     *         sequence.
+     */
+    public Tier tier() {return tier;}
+    
+    /**
+     * Decodes the whole input into an array.
+     * 
+     * @return The characters, or <code>null</code> if the heap budget cannot hold
+     *         them.
+     */
+    private static char[] heap(final File data,final Charset charset) throws IOException {
+        final CharsetDecoder d = charset.newDecoder();
+        final byte[] in = Files.readAllBytes(data.toPath());
+        // Reserve enough for the decoder's buffer, then keep only the characters.
+        final long max = (long)Math.ceil(in.length * (double)d.maxCharsPerByte()) * Character.BYTES;
+        if(!HEAP.reserve(max)) return null;
+        final char[] out;
+        try {
+            final CharBuffer C = d.decode(ByteBuffer.wrap(in));
+            C.get(out = new char[C.remaining()]);
+        } catch(IOException|RuntimeException e) {
+            HEAP.release(max);
+            throw e;
+        }
+        final long bytes = (long)out.length * Character.BYTES;
+        HEAP.release(max - bytes);
+        HEAP.track(out,bytes);
+        return out;
+    }
+    /**
+     * @throws IllegalArgumentException The indices are outside the input data,
+     *                                  represent a negative length, or one of
+     *                                  the limits is negative.
+     */
+    @Override
+    public Sequence build() throws IllegalArgumentException,
+                                   UncheckedIOException {
+        tier = null;
+        if(data == null || !data.isFile() || data.length() == 0L) return EMPTY;
+        
+        final long hl = heapLimit == null? DEFAULT_HEAP_LIMIT : heapLimit,
+                   ohl = offHeapLimit == null? DEFAULT_OFF_HEAP_LIMIT : offHeapLimit;
+        if(hl < 0L || ohl < 0L)
+            throw new IllegalArgumentException(
+                "Limit %d is negative."
+                .formatted(Math.min(hl,ohl))
+            );
+        
+        final Charset charset = cs == null? StandardCharsets.UTF_8 : cs;
+        final long size = data.length();
+        char[] array = null;
+        DirectSequence direct = null;
+        try {
+            if(size <= hl) array = heap(data,charset);
+            if(array == null && size <= ohl) direct = DirectSequence.load(data,charset,OFF_HEAP);
+        } catch(IOException|SecurityException e) {
+            throw FileSequence.ioe(e);
+        }
+        if(array == null && direct == null) {
+            final FileSequenceBuilder fsb = new FileSequenceBuilder().data(data).charset(charset).start(start);
+            final Sequence out = end == null? fsb.length(length).build() : fsb.end(end).build();
+            if(out != EMPTY) tier = Tier.FILE;
+            return out;
+        }
+        
+        final long dataLength = array != null? array.length : direct.size();
+        if(start == null) start = 0L;
+        else if(dataLength < start || start < 0L && (start += dataLength) < 0L)
+            throw new IllegalArgumentException(
+                "Invalid start index %d for array of length %d."
+                .formatted(start,dataLength)
+            );
+        
+        if(end == null) {
+            if(length == null) length = (end = dataLength) - start;
+            else if(length < 0L || (end = length + start) > dataLength)
+                throw new IllegalArgumentException(
+                    "Length %d is invalid."
+                    .formatted(length)
+                );
+        } else {
+            if(dataLength < end || end < 0L && (end += dataLength) < 0L)
+                throw new IllegalArgumentException(
+                    "Invalid end index %d for array of length %d."
+                    .formatted(end,dataLength)
+                );
+            if((length = end - start) < 0L)
+                throw new IllegalArgumentException(
+                    "Invalid range: [%d,%d)"
+                    .formatted(start,end)
+                );
+        }
+        if(length == 0L) return EMPTY;
+        if(array != null) {
+            tier = Tier.HEAP;
+            return new ArraySequence(array,(int)(long)start,(int)(long)end,(int)(long)length);
+        }
+        tier = Tier.OFF_HEAP;
+        return start == 0L && end == dataLength? direct : direct.subSequence(start,end);
+    }
+}
\ No newline at end of file
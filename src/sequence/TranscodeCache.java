@@ -0,0 +1,204 @@
+package sequence;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.APPEND;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import util.FixedSizeCharset;
+
+/**
+ * A persistent cache of transcoded files, which lets builders in later
+ * processes skip the transcoding of inputs which have not changed.
+ * <p>
+ * Each entry holds the fixed-size characters of an input followed by a trailer
+ * which describes the input: its canonical path, size, modification time and
+ * charset, and the size of the fixed-size charset. Since the characters start
+ * at the beginning of the file, sequences read entries like any other
+ * transcoded file. The name of an entry is derived from the same description,
+ * so an input which changes gets a new entry instead of overwriting one which
+ * may still be read.
+ * <p>
+ * Reading an entry marks it as recently used, and the least recently used
+ * entries are deleted when a new entry makes the cache exceed its limit.
+ * 
+ * @author AzureTriple
+ */
+final class TranscodeCache {
+    private TranscodeCache() {}
+    
+    /**The default maximum number of bytes in a cache directory.*/
+    static final long DEFAULT_LIMIT = 4L << 30;
+    static final String EXTENSION = ".seq";
+    /**The extension of entries which are still being written.*/
+    static final String PART = ".part";
+    /**
+     * The age after which a partial entry is assumed to belong to a process
+     * which died before storing it.
+     */
+    static final long PART_GRACE = TimeUnit.HOURS.toMillis(1L);
+    /**Marks the end of a trailer.*/
+    static final int MAGIC = 0x53455143;
+    static final int VERSION = 1;
+    
+    /**
+     * A transcoded input.
+     * 
+     * @param length The number of bytes at the start of the file which hold
+     *               characters.
+     */
+    static record Entry(File file,FixedSizeCharset cs,long length) {}
+    
+    /**
+     * A description of an input, which must match the trailer of its entry. This
+     * should be taken before the input is transcoded, so that an entry is never
+     * associated with a newer version of its input.
+     */
+    static record Source(String path,long size,long modified,String charset) {
+        static Source of(final File src,final Charset cs) throws IOException {
+            return new Source(
+                src.getCanonicalPath(),
+                src.length(),
+                Files.getLastModifiedTime(src.toPath()).to(TimeUnit.MICROSECONDS),
+                cs.name()
+            );
+        }
+        
+        /**@return The name of the entry of this input.*/
+        String name() {
+            try {
+                final byte[] hash = MessageDigest.getInstance("SHA-256").digest(
+                    "%s\0%d\0%d\0%s".formatted(path,size,modified,charset)
+                                    .getBytes(StandardCharsets.UTF_8)
+                );
+                return HexFormat.of().formatHex(hash,0,16) + EXTENSION;
+            } catch(final NoSuchAlgorithmException e) {throw new IllegalStateException(e);}
+        }
+        
+        byte[] trailer(final FixedSizeCharset cs) throws IOException {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try(DataOutputStream O = new DataOutputStream(bytes)) {
+                O.writeInt(VERSION);
+                O.writeUTF(path);
+                O.writeLong(size);
+                O.writeLong(modified);
+                O.writeUTF(charset);
+                O.writeByte(cs.size);
+                // The length of the trailer, including itself and the magic number.
+                O.writeInt(O.size() + 2 * Integer.BYTES);
+                O.writeInt(MAGIC);
+            }
+            return bytes.toByteArray();
+        }
+    }
+    
+    /**
+     * @return The entry of the input, which is marked as recently used, or
+     *         <code>null</code> if there is no valid entry.
+     */
+    static Entry find(final File dir,final Source s) {
+        final File file = new File(dir,s.name());
+        if(!file.isFile()) return null;
+        final FixedSizeCharset fscs;
+        final long length;
+        try(RandomAccessFile f = new RandomAccessFile(file,"r")) {
+            final long size = f.length();
+            if(size < 2 * Integer.BYTES) return null;
+            f.seek(size - 2 * Integer.BYTES);
+            final int n = f.readInt();
+            if(f.readInt() != MAGIC || n < 2 * Integer.BYTES || size < n) return null;
+            final byte[] trailer = new byte[n];
+            f.seek(length = size - n);
+            f.readFully(trailer);
+            final DataInputStream I = new DataInputStream(new ByteArrayInputStream(trailer));
+            if(I.readInt() != VERSION ||
+               !s.equals(new Source(I.readUTF(),I.readLong(),I.readLong(),I.readUTF())))
+                return null;
+            final int w = I.readByte();
+            if(w != 1 && w != 2 || length % w != 0L) return null;
+            fscs = FixedSizeCharset.withSize(w);
+        } catch(final IOException e) {
+            // Treat a damaged entry as missing; it is replaced by the new one.
+            return null;
+        }
+        try {Files.setLastModifiedTime(file.toPath(),FileTime.fromMillis(System.currentTimeMillis()));}
+        catch(IOException|SecurityException e) {}
+        return new Entry(file,fscs,length);
+    }
+    
+    /**@return A new file in the directory, which should be passed to {@linkplain #store}.*/
+    static File part(final File dir) throws IOException {
+        Files.createDirectories(dir.toPath());
+        return Files.createTempFile(dir.toPath(),null,PART).toFile();
+    }
+    /**
+     * Adds the transcoded input to the cache, then deletes the least recently
+     * used entries until the cache holds at most <code>limit</code> bytes.
+     * 
+     * @param part A file from {@linkplain #part(File)} which holds the
+     *             transcoded characters. This file is moved into the entry.
+     */
+    static Entry store(final File dir,final Source s,final File part,
+                       final FixedSizeCharset fscs,final long limit) throws IOException {
+        final long length = part.length();
+        Files.write(part.toPath(),s.trailer(fscs),APPEND);
+        final File file = new File(dir,s.name());
+        try {Files.move(part.toPath(),file.toPath(),ATOMIC_MOVE,REPLACE_EXISTING);}
+        catch(final AtomicMoveNotSupportedException e) {
+            Files.move(part.toPath(),file.toPath(),REPLACE_EXISTING);
+        }
+        clean(dir,limit,file);
+        return new Entry(file,fscs,length);
+    }
+    /**
+     * Deletes the partial entries older than {@linkplain #PART_GRACE}, then the
+     * least recently used entries other than <code>keep</code> until the limit
+     * is met. Newer partial entries count toward the limit, but are never
+     * deleted since another process may still be writing them.
+     */
+    static void clean(final File dir,final long limit,final File keep) {
+        final File[] files = dir.listFiles((d,name) -> name.endsWith(EXTENSION) || name.endsWith(PART));
+        if(files == null) return;
+        // Read the times once, since other processes may touch the entries.
+        record Used(File file,long size,long time) {}
+        final long stale = System.currentTimeMillis() - PART_GRACE;
+        long total = 0L;
+        final List<Used> entries = new ArrayList<>(files.length);
+        for(final File f : files) {
+            final Used u = new Used(f,f.length(),f.lastModified());
+            if(f.getName().endsWith(PART)) {
+                try {if(u.time() < stale && f.delete()) continue;}
+                catch(final SecurityException e) {}
+                total += u.size();
+                continue;
+            }
+            total += u.size();
+            if(!f.equals(keep)) entries.add(u);
+        }
+        if(total <= limit) return;
+        entries.sort(Comparator.comparingLong(Used::time));
+        for(int i = 0;i < entries.size() && total > limit;++i) {
+            try {if(entries.get(i).file().delete()) total -= entries.get(i).size();}
+            catch(final SecurityException e) {}
+        }
+    }
+}
\ No newline at end of file
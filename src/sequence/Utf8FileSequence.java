@@ -0,0 +1,339 @@
+package sequence;
+
+import static java.lang.Math.min;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static sequence.PageCache.PAGE_MASK;
+import static sequence.PageCache.PAGE_SCALAR;
+import static sequence.PageCache.PAGE_SIZE;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner.Cleanable;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import util.FixedSizeCharset;
+
+/**
+ * A {@linkplain FileSequence} which reads a UTF-8 file in place instead of a
+ * transcoded copy. Since the characters of such a file vary in size, the
+ * sequence keeps an {@linkplain Index} of the byte offset of every
+ * {@linkplain PageCache#PAGE_SIZE}th character, and decodes the characters at
+ * any index forward from the nearest preceding checkpoint.
+ * <p>
+ * The positions of this sequence are measured in characters rather than bytes,
+ * so the inherited bounds checks see a charset with one position per
+ * character.
+ * 
+ * @author AzureTriple
+ * 
+ * @implNote The index is built by the builder with a single read of the file
+ *           and is shared by every view of the sequence. It holds one
+ *           <code>long</code> per page of characters. Like any sequence which
+ *           reads its input directly, this sequence does not detect later
+ *           changes to the file.
+ */
+class Utf8FileSequence extends FileSequence {
+    /**The number of bytes read at once while indexing and decoding the file.*/
+    static final int BLOCK = 1 << 16;
+    
+    /**The checkpoints of a UTF-8 file.*/
+    static final class Index {
+        /**
+         * The byte offset of the code point which holds the first character of each
+         * page, shifted left by one. The lowest bit is set when that character is
+         * the second half of a surrogate pair.
+         */
+        final long[] checkpoints;
+        /**The number of characters and bytes in the file.*/
+        final long chars,bytes;
+        
+        private Index(final long[] checkpoints,final long chars,final long bytes) {
+            this.checkpoints = checkpoints;
+            this.chars = chars;
+            this.bytes = bytes;
+        }
+        
+        /**
+         * Reads the file once, checking that it is valid UTF-8 and recording a
+         * checkpoint at the start of each page of characters.
+         * 
+         * @throws java.nio.charset.CharacterCodingException The file is not valid
+         *                                                   UTF-8.
+         */
+        static Index scan(final File file) throws IOException {
+            long[] cps = new long[16];
+            int n = 0;
+            long chars = 0L,next = 0L,base = 0L;
+            final CharsetDecoder d = UTF_8.newDecoder();
+            final ByteBuffer I = ByteBuffer.allocate(BLOCK).limit(0);
+            // The decoder stops at the next checkpoint, since the buffer only has room
+            // for the characters which precede it.
+            final CharBuffer C = CharBuffer.allocate(PAGE_SIZE + 1).limit(0);
+            try(FileChannel in = FileChannel.open(file.toPath(),READ)) {
+                boolean eof = false;
+                for(CoderResult r;;) {
+                    if((r = d.decode(I,C,eof)).isError()) r.throwException();
+                    chars += C.position();
+                    if(r.isOverflow()) {
+                        // The code point at the position holds the checkpoint, unless it
+                        // is a surrogate pair which did not fit in the last free slot. In
+                        // that case, the checkpoint is the second half of the pair.
+                        if(n == cps.length) cps = Arrays.copyOf(cps,n << 1);
+                        cps[n++] = base + I.position() << 1 | C.remaining();
+                        next += PAGE_SIZE;
+                    } else if(eof) break;
+                    else {
+                        base += I.position();
+                        eof = in.read(I.compact(),base + I.position()) == -1;
+                        I.flip();
+                    }
+                    C.clear().limit((int)(next - chars));
+                }
+            }
+            return new Index(Arrays.copyOf(cps,n),chars,base + I.position());
+        }
+        
+        /**@return The byte offset of the code point which holds the first character of the page.*/
+        long offset(final long page) {return checkpoints[(int)page] >>> 1;}
+        /**@return The number of characters to skip after the offset of the page.*/
+        int skip(final long page) {return (int)checkpoints[(int)page] & 1;}
+        /**@return The number of characters in the page.*/
+        int size(final long page) {return (int)min(PAGE_SIZE,chars - (page << PAGE_SCALAR));}
+    }
+    
+    final Index index;
+    
+    /**@param handle A handle which has been retained for this sequence.*/
+    Utf8FileSequence(final Handle handle,final File file,final Index index,final long start,
+                     final long end,final String suffix) {
+        super(handle,file,start,end,end - start,Mutability.IMMUTABLE,suffix,FixedSizeCharset.Fixed_1);
+        this.index = index;
+    }
+    Utf8FileSequence(final File file,final Index index,final long start,final long end,
+                     final String suffix) throws UncheckedIOException {
+        this(open(file,Mutability.IMMUTABLE),file,index,start,end,suffix);
+    }
+    
+    @Override int width() {return 0;}
+    /**The iterators decode whole pages and do not need a buffer.*/
+    @Override int readBlock() {return 0;}
+    /**The file holds UTF-8, not one byte per character.*/
+    @Override boolean bytes(final long begin,final ByteBuffer dst) {return false;}
+    @Override
+    FileSequence share(final long start,final long end) throws UncheckedIOException {
+        return new Utf8FileSequence(retain(),file,index,start,end,suffix);
+    }
+    
+    /**
+     * Decodes the characters of the file which start at the specified index into
+     * the remaining space of the buffer.
+     * 
+     * @throws EOFException The file ends before the buffer is full.
+     */
+    void decode(final Handle h,final long begin,final CharBuffer dst) throws IOException {
+        final long page = begin >>> PAGE_SCALAR;
+        long pos = index.offset(page);
+        // The characters which precede the first one.
+        int skip = (int)(begin & PAGE_MASK) + index.skip(page);
+        final CharsetDecoder d = UTF_8.newDecoder();
+        // Every character takes at most three bytes, except for surrogate pairs,
+        // which take four.
+        final ByteBuffer I = ByteBuffer.allocate(
+            (int)min(COPY_BLOCK,min(index.bytes - pos,3L * (skip + dst.remaining()) + 4L))
+        );
+        final CharBuffer C = CharBuffer.allocate(min(BLOCK,I.capacity() + 1));
+        boolean eof = false;
+        while(dst.hasRemaining()) {
+            if(eof) throw new EOFException();
+            pos += h.read(I,pos);
+            eof = I.hasRemaining();
+            final CoderResult r = d.decode(I.flip(),C,eof);
+            I.compact();
+            if(r.isError()) r.throwException();
+            C.flip();
+            if(skip != 0) {
+                final int k = min(skip,C.remaining());
+                C.position(C.position() + k);
+                skip -= k;
+            }
+            final int k = min(dst.remaining(),C.remaining());
+            dst.put(C.limit(C.position() + k));
+            C.clear();
+            // Leave the rest of the input for the next round.
+            if(r.isOverflow()) eof = false;
+        }
+    }
+    /**Decodes a page with the specified handle, without the {@linkplain PageCache}.*/
+    char[] page(final Handle h,final long page) throws IOException {
+        final char[] out = new char[index.size(page)];
+        decode(h,page << PAGE_SCALAR,CharBuffer.wrap(out));
+        return out;
+    }
+    @Override char[] page(final long page) throws IOException {return page(handle,page);}
+    
+    /**@return The character at the specified index in the file.*/
+    @Override
+    char read(final long i) throws IOException {
+        final long page = i >>> PAGE_SCALAR;
+        final char[] cached = PageCache.get(this,page);
+        return (cached != null? cached : page(page))[(int)(i & PAGE_MASK)];
+    }
+    @Override
+    void copy(final long begin,final char[] arr,final int offset,final int count) throws IOException {
+        if(count != 0) decode(handle,begin,CharBuffer.wrap(arr,offset,count));
+    }
+    
+    /**The most recently decoded page of an iterator.*/
+    static final class Pages {
+        final Utf8FileSequence fs;
+        final Handle handle;
+        long page = -1L;
+        char[] chars;
+        
+        Pages(final Utf8FileSequence fs,final Handle handle) {
+            this.fs = fs;
+            this.handle = handle;
+        }
+        
+        char get(final long i) throws UncheckedIOException {
+            final long p = i >>> PAGE_SCALAR;
+            if(p != page) {
+                try {chars = fs.page(handle,p);}
+                catch(final IOException e) {throw ioe(e);}
+                page = p;
+            }
+            return chars[(int)(i & PAGE_MASK)];
+        }
+    }
+    
+    /**A {@linkplain SimpleSequenceIterator} which decodes one page at a time.*/
+    private static class USFSI implements SimpleSequenceIterator {
+        final Cleanable cleanable;
+        final fscleaner sfsc;
+        final Pages pages;
+        // Indices are measured in characters.
+        final long start,end;
+        long cursor = 0L;
+        
+        USFSI(final Utf8FileSequence parent) throws UncheckedIOException {
+            final Handle h = parent.retain();
+            cleanable = CleaningUtil.register(this,sfsc = new fscleaner(h));
+            pages = new Pages(parent,h);
+            start = parent.start;
+            end = parent.size();
+        }
+        
+        @Override
+        public SimpleSequenceIterator skip(final long count) throws IllegalArgumentException,
+                                                                    NoSuchElementException {
+            if(count == 0L) return this;
+            if(count < 0L)
+                throw new IllegalArgumentException(
+                    "Negative offset %d."
+                    .formatted(count)
+                );
+            if(cursor + count >= end)
+                throw new NoSuchElementException(
+                    "Cannot skip %d characters after index %d."
+                    .formatted(count,cursor)
+                );
+            cursor += count;
+            return this;
+        }
+        
+        @Override
+        public boolean hasNext() throws UncheckedIOException {
+            if(cursor != end) return true;
+            close(); return false;
+        }
+        @Override
+        public Character next() throws NoSuchElementException,UncheckedIOException {
+            if(!hasNext()) throw new NoSuchElementException();
+            return pages.get(start + cursor++);
+        }
+        @Override
+        public int nextChar() throws UncheckedIOException {
+            if(!hasNext()) return EOS;
+            return pages.get(start + cursor++);
+        }
+        
+        @Override
+        public void forEachRemaining(final Consumer<? super Character> action) throws UncheckedIOException {
+            if(action == null) return;
+            for(;cursor < end;++cursor) action.accept(pages.get(start + cursor));
+        }
+        @Override
+        public void forEachChar(final CharConsumer action) throws UncheckedIOException {
+            if(action == null) return;
+            for(;cursor < end;++cursor) action.accept(pages.get(start + cursor));
+        }
+        
+        @Override
+        public void close() throws UncheckedIOException {
+            cursor = end;
+            cleanable.clean();
+            if(sfsc.e != null) throw ioe(sfsc.e);
+        }
+    }
+    @Override public SimpleSequenceIterator iterator() throws UncheckedIOException {return new USFSI(this);}
+    
+    /**UTF-8 Forward File Sequence Iterator*/
+    static class Utf8FFSI extends FFSI {
+        final Pages pages;
+        Utf8FFSI(final Utf8FileSequence fs) throws UncheckedIOException {
+            super(fs);
+            pages = new Pages(fs,handle);
+        }
+        @Override char get(final long i) {return pages.get(i);}
+    }
+    /**UTF-8 Reverse File Sequence Iterator*/
+    static class Utf8RFSI extends RFSI {
+        final Pages pages;
+        Utf8RFSI(final Utf8FileSequence fs) throws UncheckedIOException {
+            super(fs);
+            pages = new Pages(fs,handle);
+        }
+        @Override char get(final long i) {return pages.get(i);}
+    }
+    @Override
+    public SequenceIterator forwardIterator() throws UncheckedIOException {
+        return isEmpty()? EMPTY.forwardIterator() : new Utf8FFSI(this);
+    }
+    @Override
+    public SequenceIterator reverseIterator() throws UncheckedIOException {
+        return isEmpty()? EMPTY.reverseIterator() : new Utf8RFSI(this);
+    }
+    
+    @Override
+    public MutableSequence mutableCopy() throws UncheckedIOException {
+        final File nf = tmpFile(Mutability.MUTABLE);
+        try(FileChannel out = FileChannel.open(nf.toPath(),WRITE)) {
+            final int scalar = MutableFileSequence.MUTABLE_CS.size;
+            final ByteBuffer buf = ByteBuffer.allocate((int)min(length * scalar,COPY_BLOCK));
+            final CharBuffer chars = buf.asCharBuffer();
+            for(long i = start;i < end;) {
+                final int n = (int)min(end - i,chars.capacity());
+                decode(handle,i,chars.clear().limit(n));
+                buf.clear().limit(n * scalar);
+                while(buf.hasRemaining()) out.write(buf);
+                i += n;
+            }
+            return new MutableFileSequence(nf,0L,length * scalar,length * scalar,suffix);
+        } catch(UncheckedIOException|IOException|SecurityException e) {
+            try {nf.delete();}
+            catch(final SecurityException e1) {}
+            throw ioe(e);
+        }
+    }
+}
\ No newline at end of file
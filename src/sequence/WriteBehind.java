@@ -0,0 +1,228 @@
+package sequence;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import sequence.FileSequence.Handle;
+import sequence.MutableFileSequenceBuilder.Durability;
+
+/**
+ * A buffer of the writes to the file of a {@linkplain MutableFileSequence}, which
+ * is shared by all views of the file through their handle. The buffer holds
+ * the written range of each page of the file, which are written to it in order
+ * once the buffer is full, when the sequence is flushed, and when the last view
+ * of the file is closed. Reads through the handle see the buffered pages.
+ * <p>
+ * The {@linkplain Durability} decides when the file is also synced.
+ * 
+ * @author AzureTriple
+ * 
+ * @implNote A periodic sync which fails is thrown by the next write or flush.
+ */
+final class WriteBehind {
+    /**Each page of the buffer holds <code>2^PAGE_SCALAR</code> bytes of the file.*/
+    static final int PAGE_SCALAR = 12;
+    static final int PAGE_SIZE = 1 << PAGE_SCALAR,
+                     PAGE_MASK = PAGE_SIZE - 1;
+    
+    /**The thread which syncs the files with periodic durability, which is only started if one is built.*/
+    private static final class Syncer {
+        static final ScheduledExecutorService SYNC = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread t = new Thread(r,"sequence-sync");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+    
+    /**A page of the file, of which the bytes in <code>[lo,hi)</code> were written.*/
+    private static final class Page {
+        final byte[] data = new byte[PAGE_SIZE];
+        int lo,hi;
+        
+        Page range(final int lo,final int hi) {
+            this.lo = lo;
+            this.hi = hi;
+            return this;
+        }
+    }
+    
+    final Durability durability;
+    /**The maximum number of bytes in the buffer, or zero to write through to the file.*/
+    final int limit;
+    final long interval;
+    private final TreeMap<Long,Page> pages = new TreeMap<>();
+    /**The pages which were flushed, which are reused by later writes.*/
+    private final ArrayDeque<Page> free = new ArrayDeque<>();
+    /**Incremented by each flush, so that a read which overlapped one can retry.*/
+    private volatile long epoch = 0L;
+    /**The number of writes, and the number of them which are known to be durable.*/
+    private long written = 0L,durable = 0L;
+    /**<code>true</code> while a thread syncs the file for a group commit.*/
+    private boolean syncing = false;
+    private ScheduledFuture<?> periodic = null;
+    private volatile IOException failure = null;
+    
+    WriteBehind(final Durability durability,final int limit,final long interval) {
+        this.durability = durability;
+        this.limit = limit;
+        this.interval = interval;
+    }
+    WriteBehind() {
+        this(
+            Durability.NONE,
+            MutableFileSequenceBuilder.DEFAULT_WRITE_BUFFER,
+            MutableFileSequenceBuilder.DEFAULT_SYNC_INTERVAL
+        );
+    }
+    /**@return A buffer with the same settings, for a copy of the file.*/
+    WriteBehind like() {return new WriteBehind(durability,limit,interval);}
+    
+    /**Starts the periodic syncs of the file of the handle, if the durability needs them.*/
+    void start(final Handle h) {
+        if(durability == Durability.PERIODIC)
+            periodic = Syncer.SYNC.scheduleWithFixedDelay(() -> {
+                try {sync(h);}
+                catch(final IOException e) {failure = e;}
+            },interval,interval,TimeUnit.MILLISECONDS);
+    }
+    long epoch() {return epoch;}
+    /**Throws the failure of the last periodic sync, if it failed.*/
+    private void check() throws IOException {
+        final IOException e = failure;
+        if(e != null) {
+            failure = null;
+            throw new IOException("The file could not be synced.",e);
+        }
+    }
+    
+    /**
+     * Buffers the remaining bytes of the buffer, which are written to the file
+     * at the position. With {@linkplain Durability#GROUP}, this waits until the
+     * bytes are durable.
+     */
+    void write(final Handle h,final ByteBuffer src,long pos) throws IOException {
+        check();
+        final long seq;
+        synchronized(this) {
+            if(limit == 0) h.writeFile(src,pos);
+            else if(src.remaining() >= limit) {
+                // A write which would fill the buffer by itself gains nothing from it.
+                flush(h);
+                h.writeFile(src,pos);
+            } else {
+                while(src.hasRemaining()) {
+                    final long index = pos >>> PAGE_SCALAR;
+                    final int o = (int)(pos & PAGE_MASK),
+                              n = min(src.remaining(),PAGE_SIZE - o);
+                    final long base = index << PAGE_SCALAR;
+                    Page p = pages.get(index);
+                    if(p == null) {
+                        p = free.isEmpty()? new Page() : free.pop();
+                        pages.put(index,p.range(o,o + n));
+                    }
+                    else {
+                        // Fill the gap between the written ranges from the file, so
+                        // that the page stays one contiguous range.
+                        if(o > p.hi) h.readFile(ByteBuffer.wrap(p.data,p.hi,o - p.hi),base + p.hi);
+                        else if(o + n < p.lo) h.readFile(ByteBuffer.wrap(p.data,o + n,p.lo - o - n),base + o + n);
+                        p.lo = min(p.lo,o);
+                        p.hi = max(p.hi,o + n);
+                    }
+                    src.get(p.data,o,n);
+                    pos += n;
+                }
+                if((long)pages.size() << PAGE_SCALAR > limit) flush(h);
+            }
+            seq = ++written;
+        }
+        if(durability == Durability.GROUP) commit(h,seq);
+    }
+    /**
+     * Copies the buffered bytes in the range <code>[pos,pos + n)</code> of the
+     * file over the bytes which were read from it into the buffer, starting at
+     * index <code>first</code> of the buffer.
+     */
+    synchronized void overlay(final ByteBuffer dst,final int first,final long pos,final int n) {
+        if(n == 0 || pages.isEmpty()) return;
+        final long end = pos + n;
+        for(final Map.Entry<Long,Page> e : pages.subMap(pos >>> PAGE_SCALAR,true,end - 1 >>> PAGE_SCALAR,true).entrySet()) {
+            final long base = e.getKey() << PAGE_SCALAR;
+            final Page p = e.getValue();
+            final long from = max(pos,base + p.lo),to = min(end,base + p.hi);
+            if(from < to) dst.put(first + (int)(from - pos),p.data,(int)(from - base),(int)(to - from));
+        }
+    }
+    /**Writes the buffered pages to the file in order.*/
+    synchronized void flush(final Handle h) throws IOException {
+        if(pages.isEmpty()) return;
+        try {
+            for(Map.Entry<Long,Page> e;(e = pages.firstEntry()) != null;) {
+                final Page p = e.getValue();
+                h.writeFile(ByteBuffer.wrap(p.data,p.lo,p.hi - p.lo),(e.getKey() << PAGE_SCALAR) + p.lo);
+                free.push(pages.remove(e.getKey()));
+            }
+        } finally {++epoch;}
+    }
+    /**Adds a snapshot to the handle after the buffer is flushed, so that no write falls in between.*/
+    synchronized void snapshot(final Handle h,final SnapshotSequence.Shadow s) throws IOException {
+        flush(h);
+        h.snapshots.add(s);
+    }
+    /**Flushes the buffer and syncs the file.*/
+    void sync(final Handle h) throws IOException {
+        final long target;
+        synchronized(this) {
+            flush(h);
+            target = written;
+        }
+        h.force(false);
+        synchronized(this) {durable = max(durable,target);}
+    }
+    /**
+     * Waits until the write with the sequence number is durable. A thread which
+     * finds no sync in progress syncs all of the writes so far, so the writes of
+     * concurrent threads share a sync.
+     */
+    private void commit(final Handle h,final long seq) throws IOException {
+        synchronized(this) {
+            while(durable < seq && syncing) {
+                try {wait();}
+                catch(final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+            if(durable >= seq) return;
+            syncing = true;
+        }
+        try {sync(h);}
+        finally {
+            synchronized(this) {
+                syncing = false;
+                notifyAll();
+            }
+        }
+    }
+    /**Flushes the buffer, and syncs the file unless the durability is {@linkplain Durability#NONE}.*/
+    void persist(final Handle h) throws IOException {
+        check();
+        if(durability == Durability.NONE) flush(h);
+        else sync(h);
+    }
+    /**Stops the periodic syncs and persists the buffer, once the last view of the file is closed.*/
+    void close(final Handle h) throws IOException {
+        if(periodic != null) periodic.cancel(false);
+        persist(h);
+    }
+}
\ No newline at end of file
@@ -52,6 +52,18 @@ class ArraySequenceTest {
         );
     }
     
+    @Test
+    void testRead() {
+        final String s = TestUtils.getReadString();
+        TestUtils.read(p(),b -> asb(b).data(s));
+    }
+    
+    @Test
+    void testAsync() {
+        final String s = TestUtils.getAsyncString();
+        TestUtils.async(p(),b -> asb(b).data(s));
+    }
+    
     @Test
     void testSubSequence() {
         final String s = TestUtils.getSubSequenceString();
@@ -77,6 +89,12 @@ class ArraySequenceTest {
             TestUtils.itr3(p(),b -> asb(b).data(s));
         }
     }
+    
+    @Test
+    void testScan() {
+        final String s = TestUtils.getScanString();
+        TestUtils.scan(p(),b -> asb(b).data(s));
+    }
 }
 
 
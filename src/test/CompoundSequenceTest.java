@@ -80,6 +80,18 @@ class CompoundSequenceTest {
         );
     }
     
+    @Test
+    void testRead() {
+        final String s = TestUtils.getReadString();
+        TestUtils.read(p(),b -> csb(b).data(split(s)));
+    }
+    
+    @Test
+    void testAsync() {
+        final String s = TestUtils.getAsyncString();
+        TestUtils.async(p(),b -> csb(b).data(split(s)));
+    }
+    
     @Test
     void testSubSequence() {
         final String s = TestUtils.getSubSequenceString();
@@ -4,6 +4,7 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import org.junit.jupiter.api.Test;
@@ -12,11 +13,12 @@ import sequence.SequenceBuilder;
 import test.TestUtils.provider;
 
 class FileSequenceTest {
-    static File write(String s) {
+    static File write(String s) {return write(s,StandardCharsets.UTF_8);}
+    static File write(String s,Charset cs) {
         try {
             final File out = Files.createTempFile(null,null).toFile();
             out.deleteOnExit();
-            try(BufferedWriter w = new BufferedWriter(new FileWriter(out,StandardCharsets.UTF_8))) {
+            try(BufferedWriter w = new BufferedWriter(new FileWriter(out,cs))) {
                 w.write(s);
             }
             return out;
@@ -24,6 +26,10 @@ class FileSequenceTest {
         return null;
     }
     provider p() {return () -> new FileSequenceBuilder();}
+    /**@return Whether the sequences read through the page cache.*/
+    boolean cached() {return true;}
+    /**@return Whether UTF-8 inputs are read in place.*/
+    boolean indexed() {return false;}
     FileSequenceBuilder fsb(final SequenceBuilder sb) {return (FileSequenceBuilder)sb;}
     
     @Test
@@ -69,12 +75,135 @@ class FileSequenceTest {
         );
     }
     
+    @Test
+    void testRead() {
+        final String s = TestUtils.getReadString();
+        TestUtils.read(p(),b -> fsb(b).data(write(s)));
+    }
+    
+    @Test
+    void testAsync() {
+        final String s = TestUtils.getAsyncString();
+        TestUtils.async(p(),b -> fsb(b).data(write(s)));
+        // The root of a lazy sequence reads on the calling thread until its end is known.
+        TestUtils.async(p(),b -> fsb(b).data(write(s)).lazy(true));
+    }
+    
+    @Test
+    void testCopies() {
+        final String s = TestUtils.getCopyString();
+        // Inputs with and without characters which need two bytes.
+        for(final String t : new String[] {s,s.substring(0,s.length() - 2)}) {
+            TestUtils.copies(p(),b -> fsb(b).data(write(t)),t);
+            TestUtils.copies(p(),b -> fsb(b).data(write(t)).lazy(true),t);
+        }
+    }
+    
+    @Test
+    void testWidening() {
+        final String s = TestUtils.getWideningString();
+        TestUtils.widening(p(),b -> fsb(b).data(write(s)),s);
+        TestUtils.widening(
+            p(),
+            b -> fsb(b).data(write(s,StandardCharsets.ISO_8859_1)).charset(StandardCharsets.ISO_8859_1),
+            s
+        );
+    }
+    
+    @Test
+    void testTranscode() {
+        final String s = TestUtils.getTranscodeString();
+        TestUtils.transcode(
+            p(),
+            b -> fsb(b).data(write(s)),
+            b -> fsb(b).end(s.length() + 1L)
+        );
+    }
+    
+    @Test
+    void testParallel() {
+        for(final String s : TestUtils.getParallelStrings())
+            TestUtils.parallel(p(),b -> fsb(b).data(write(s)).parallelism(4),s);
+    }
+    
     @Test
     void testSubSequence() {
         final String s = TestUtils.getSubSequenceString();
         TestUtils.subSequence(p(),b -> fsb(b).data(write(s)));
     }
     
+    @Test
+    void testShared() {
+        final String s = TestUtils.getSharedString();
+        TestUtils.shared(p(),b -> fsb(b).data(write(s)));
+    }
+    
+    @Test
+    void testConcurrent() {
+        final String s = TestUtils.getConcurrentString();
+        TestUtils.concurrent(p(),b -> fsb(b).data(write(s)));
+    }
+    
+    @Test
+    void testDirect() {
+        final String s = TestUtils.getDirectString(),
+                     w = TestUtils.getWideDirectString();
+        TestUtils.direct(
+            p(),
+            b -> fsb(b).data(write(s,StandardCharsets.ISO_8859_1)).charset(StandardCharsets.ISO_8859_1),
+            b -> fsb(b).data(write(w,StandardCharsets.UTF_16BE)).charset(StandardCharsets.UTF_16BE),
+            b -> fsb(b).copy(true)
+        );
+    }
+    
+    @Test
+    void testCache() throws IOException {
+        final File src = write(TestUtils.getCacheString()),
+                   dir = Files.createTempDirectory(null).toFile();
+        dir.deleteOnExit();
+        try {
+            TestUtils.cache(
+                p(),
+                b -> fsb(b).data(src).cache(dir),
+                b -> fsb(b).cacheLimit(0L),
+                src,
+                dir,
+                indexed()
+            );
+        } finally {
+            final File[] files = dir.listFiles();
+            if(files != null) for(final File f : files) f.delete();
+        }
+    }
+    
+    @Test
+    void testIndexed() {
+        final String s = TestUtils.getIndexedString();
+        TestUtils.indexed(
+            p(),
+            b -> fsb(b).data(write(s)),
+            b -> fsb(b).data(write(s,StandardCharsets.UTF_16LE)),
+            indexed()
+        );
+    }
+    
+    @Test
+    void testLazy() {
+        final String s = TestUtils.getLazyString();
+        TestUtils.lazy(
+            p(),
+            b -> fsb(b).data(write(s)).lazy(true),
+            // The first wide character of the input is not valid UTF-8.
+            b -> fsb(b).data(write("x".repeat(1 << 20) + s,StandardCharsets.UTF_16LE)).lazy(true)
+        );
+    }
+    
+    @Test
+    void testPageCache() {
+        final String s = TestUtils.getPageCacheString();
+        TestUtils.pageCache(p(),b -> fsb(b).data(write(s)),cached());
+    }
+    
     @Test
     void testIterator() {
         {
@@ -0,0 +1,92 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import util.FileUtils;
+import util.FixedSizeCharset;
+
+class FileUtilsTest {
+    static byte[] bytes(final int n,final long seed) {
+        final byte[] b = new byte[n];
+        new Random(seed).nextBytes(b);
+        return b;
+    }
+    static File write(final byte[] b) throws IOException {
+        final File out = Files.createTempFile(null,null).toFile();
+        out.deleteOnExit();
+        Files.write(out.toPath(),b);
+        return out;
+    }
+    static byte[] read(final File f) throws IOException {return Files.readAllBytes(f.toPath());}
+    
+    @Test
+    void testTransferDirectOffset() throws IOException {
+        final byte[] src = bytes(1000,1L),dst = bytes(3000,2L);
+        final File s = write(src),d = write(dst);
+        try {
+            FileUtils.transferDirect(s,100L,d,1000L,500L);
+            final byte[] expected = dst.clone();
+            System.arraycopy(src,100,expected,1000,500);
+            assertArrayEquals(expected,read(d));
+            
+            // Past the end of the destination, which grows to fit.
+            FileUtils.transferDirect(s,0L,d,2900L,200L);
+            final byte[] grown = Arrays.copyOf(expected,3100);
+            System.arraycopy(src,0,grown,2900,200);
+            assertArrayEquals(grown,read(d));
+        } finally {
+            s.delete();
+            d.delete();
+        }
+    }
+    
+    @Test
+    void testTransferShortSource() throws IOException {
+        final byte[] src = bytes(1000,3L),dst = bytes(2000,4L);
+        final File s = write(src),d = write(dst);
+        try(FileChannel I = FileChannel.open(s.toPath(),StandardOpenOption.READ);
+            FileChannel O = FileChannel.open(d.toPath(),StandardOpenOption.WRITE)) {
+            assertEquals(400L,FileUtils.transfer(I,600L,1000L,O,50L));
+            assertEquals(450L,O.position());
+            assertEquals(0L,I.position());
+            assertEquals(0L,FileUtils.transfer(I,1000L,10L,O,0L));
+            assertEquals(0L,FileUtils.transfer(I,2000L,10L,O,0L));
+        }
+        try {
+            final byte[] expected = dst.clone();
+            System.arraycopy(src,600,expected,50,400);
+            assertArrayEquals(expected,read(d));
+        } finally {
+            s.delete();
+            d.delete();
+        }
+    }
+    
+    @Test
+    void testResizeCoded() throws IOException {
+        // Each four bytes decode to two characters of two bytes.
+        final byte[] src = bytes(2048,5L);
+        File f = write(src);
+        try {
+            // Narrowing copies through writeAndTruncateCoded.
+            FixedSizeCharset.resize(f,4,2);
+            assertArrayEquals(src,read(f));
+        } finally {f.delete();}
+        f = write(src);
+        try {
+            FixedSizeCharset.resize(f,4,1);
+            final byte[] expected = new byte[src.length / 2];
+            for(int i = 0;i < expected.length;++i) expected[i] = src[2 * i + 1];
+            assertArrayEquals(expected,read(f));
+        } finally {f.delete();}
+    }
+}
\ No newline at end of file
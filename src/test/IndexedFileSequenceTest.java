@@ -0,0 +1,10 @@
+package test;
+
+import sequence.FileSequenceBuilder;
+import test.TestUtils.provider;
+
+/**Reads UTF-8 inputs in place through a checkpoint index.*/
+class IndexedFileSequenceTest extends FileSequenceTest {
+    @Override provider p() {return () -> new FileSequenceBuilder().indexed(true);}
+    @Override boolean indexed() {return true;}
+}
\ No newline at end of file
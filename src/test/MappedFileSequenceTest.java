@@ -0,0 +1,22 @@
+package test;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import sequence.FileSequenceBuilder;
+import test.TestUtils.provider;
+
+class MappedFileSequenceTest extends FileSequenceTest {
+    @Override provider p() {return () -> new FileSequenceBuilder().mapped(true);}
+    @Override boolean cached() {return false;}
+    
+    /**Copies the bytes of a one-byte mapping from an offset which is not the start of the file.*/
+    @Test
+    void testWideningOffset() {
+        final String s = TestUtils.getWideningString();
+        TestUtils.widening(
+            p(),
+            b -> fsb(b).data(write(s,StandardCharsets.ISO_8859_1)).charset(StandardCharsets.ISO_8859_1).start(3L),
+            s.substring(3)
+        );
+    }
+}
\ No newline at end of file
@@ -47,6 +47,12 @@ class MutableArraySequenceTest extends ArraySequenceTest {
         TestUtils.mutableIterator(p(),b -> asb(b).data(s));
     }
     
+    @Test
+    void testSnapshot() {
+        final String s = TestUtils.getSnapshotString();
+        TestUtils.snapshot(p(),b -> asb(b).data(s));
+    }
+    
 }
 
 
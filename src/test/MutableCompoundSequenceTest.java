@@ -48,4 +48,10 @@ class MutableCompoundSequenceTest extends CompoundSequenceTest {
         final String s = TestUtils.getMItrString();
         TestUtils.mutableIterator(p(),b -> csb(b).data(split(s)));
     }
+    
+    @Test
+    void testSnapshot() {
+        final String s = TestUtils.getSnapshotString();
+        TestUtils.snapshot(p(),b -> csb(b).data(split(s)));
+    }
 }
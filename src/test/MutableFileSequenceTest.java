@@ -45,4 +45,23 @@ class MutableFileSequenceTest extends FileSequenceTest {
         final String s = TestUtils.getMItrString();
         TestUtils.mutableIterator(p(),b -> fsb(b).data(write(s)));
     }
+    
+    @Test
+    void testSnapshot() {
+        final String s = TestUtils.getSnapshotString();
+        TestUtils.snapshot(p(),b -> fsb(b).data(write(s)));
+    }
+    
+    @Test
+    void testDurability() {
+        final String s = TestUtils.getDurabilityString();
+        TestUtils.durability(p(),b -> fsb(b).data(write(s)));
+    }
+    
+    @Test
+    void testCacheRace() throws InterruptedException {
+        final String s = TestUtils.getCacheRaceString();
+        TestUtils.cacheRace(p(),b -> fsb(b).data(write(s)));
+        TestUtils.cacheRace(p(),b -> fsb(b).data(write(s)).writeBuffer(0));
+    }
 }
@@ -0,0 +1,9 @@
+package test;
+
+import sequence.TieredSequenceBuilder;
+import test.TestUtils.provider;
+
+/**Holds the characters of every input in direct memory.*/
+class OffHeapSequenceTest extends TieredSequenceTest {
+    @Override provider p() {return () -> new TieredSequenceBuilder().heapLimit(0L);}
+}
\ No newline at end of file
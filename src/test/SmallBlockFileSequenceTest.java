@@ -0,0 +1,9 @@
+package test;
+
+import sequence.FileSequenceBuilder;
+import test.TestUtils.provider;
+
+/**Uses the smallest block size so that every read crosses a block boundary.*/
+class SmallBlockFileSequenceTest extends FileSequenceTest {
+    @Override provider p() {return () -> new FileSequenceBuilder().blockSize(2);}
+}
\ No newline at end of file
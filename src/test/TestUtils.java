@@ -6,6 +6,14 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
 
 import java.io.BufferedWriter;
@@ -13,16 +21,27 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import com.sun.management.UnixOperatingSystemMXBean;
 import sequence.ArraySequenceBuilder;
 import sequence.CompoundSequenceBuilder;
 import sequence.FileSequenceBuilder;
+import sequence.MutableFileSequenceBuilder;
+import sequence.MutableFileSequenceBuilder.Durability;
 import sequence.MutableSequence;
 import sequence.MutableSequence.MutableSequenceIterator;
+import sequence.PageCache;
 import sequence.Sequence;
 import sequence.Sequence.SequenceIterator;
 import sequence.SequenceBuilder;
+import sequence.TieredSequenceBuilder;
+import sequence.TieredSequenceBuilder.Tier;
 
 final class TestUtils {
     private TestUtils() {}
@@ -170,6 +189,76 @@ final class TestUtils {
         }
     }
     
+    static String getReadString() {return getTestBuilderString();}
+    private static void readbase(final String s,final Sequence a) {
+        final char[] arr = new char[s.length() + 4];
+        assertEquals(s.length(),a.read(0L,arr,2,s.length()));
+        assertEquals(s,new String(arr,2,s.length()));
+        assertEquals(3,a.read(-3L,arr,0,arr.length));
+        assertEquals(s.substring(s.length() - 3),new String(arr,0,3));
+        assertEquals(5,a.read(1L,arr,0,5));
+        assertEquals(s.substring(1,6),new String(arr,0,5));
+        assertEquals(0,a.read((long)s.length(),arr,0,arr.length));
+        
+        final CharBuffer cb = CharBuffer.allocate(4);
+        assertEquals(4,a.read(2L,cb));
+        assertEquals(s.substring(2,6),cb.flip().toString());
+        final CharBuffer db = ByteBuffer.allocateDirect(s.length() * 2).asCharBuffer();
+        assertEquals(s.length(),a.read(0L,db));
+        assertEquals(s,db.flip().toString());
+        
+        assertThrows(IndexOutOfBoundsException.class,() -> a.read(s.length() + 1L,arr,0,1));
+        assertThrows(IndexOutOfBoundsException.class,() -> a.read(-s.length() - 1L,arr,0,1));
+        // Indices which wrap around to valid ones when narrowed to an int.
+        assertThrows(IndexOutOfBoundsException.class,() -> a.read((1L << 32) + 1L,arr,0,1));
+        assertThrows(IndexOutOfBoundsException.class,() -> a.read(-(1L << 32) - 1L,arr,0,1));
+        assertThrows(IndexOutOfBoundsException.class,() -> a.read(0L,arr,arr.length,1));
+        assertThrows(IndexOutOfBoundsException.class,() -> a.read(0L,arr,-1,1));
+    }
+    static void read(final provider p,final appender DATA) {
+        final String str = getReadString();
+        try(Sequence a = DATA.append(p.provide()).build();
+            Sequence b = a.subSequence(3,-2)) {
+            readbase(str,a);
+            readbase(str.substring(3,str.length() - 2),b);
+        }
+    }
+    
+    static String getTranscodeString() {
+        // The first wide character is only found after several blocks of narrow ones.
+        return "ab\tc\u00e9 ".repeat(40000) + "\u4e2dxyz";
+    }
+    static void transcode(final provider p,final appender DATA,final appender END) {
+        final String s = getTranscodeString();
+        final int w = s.indexOf('\u4e2d');
+        try(Sequence a = DATA.append(p.provide()).build()) {
+            assertEquals(s.length(),a.size());
+            streq(s,a);
+            assertEquals('\u00e9',a.charAt((long)w - 2L));
+            assertEquals('\u4e2d',a.charAt((long)w));
+            assertEquals('z',a.charAt(-1L));
+        }
+        // The input holds more bytes than characters.
+        assertThrows(IllegalArgumentException.class,() -> END.append(DATA.append(p.provide())).build());
+    }
+    
+    /**@return Strings which are long enough to be decoded in several chunks.*/
+    static String[] getParallelStrings() {
+        return new String[] {
+            "ab\tc\u00e9 ".repeat(1 << 21),
+            // Chunks are likely to start inside multi-byte characters and surrogate pairs.
+            "ab\tc\u00e9 \u4e2d\ud83d\ude00 ".repeat(700000),
+            // Only the last chunk needs two bytes, and only for its last character.
+            "ab\tc\u00ff ".repeat(1 << 21) + '\u0100'
+        };
+    }
+    static void parallel(final provider p,final appender DATA,final String s) {
+        try(Sequence a = DATA.append(p.provide()).build()) {
+            assertEquals(s.length(),a.size());
+            streq(s,a);
+        }
+    }
+    
     static String getSubSequenceString() {return getTestBuilderString();}
     private static void ssbase(final String s,final Sequence a,final int x,final int y) {
         try(Sequence ss = a.subSequence(0,s.length())) {streq(s,ss);}
@@ -210,6 +299,474 @@ final class TestUtils {
         }
     }
     
+    static String getSharedString() {return getTestBuilderString();}
+    /**@return The number of files opened by this process, or -1 if it is unknown.*/
+    private static long openFiles() {
+        final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        return os instanceof UnixOperatingSystemMXBean? ((UnixOperatingSystemMXBean)os).getOpenFileDescriptorCount()
+                                                      : -1L;
+    }
+    static void shared(final provider p,final appender DATA) {
+        final String s = getSharedString();
+        final int l = s.length();
+        final Sequence[] views = new Sequence[1000];
+        final SequenceIterator[] itrs = new SequenceIterator[views.length];
+        final long before;
+        try(Sequence a = DATA.append(p.provide()).build()) {
+            before = openFiles();
+            for(int i = 0;i < views.length;++i) {
+                views[i] = a.subSequence(i % l,l);
+                itrs[i] = views[i].forwardIterator();
+            }
+            // The views do not open the file again.
+            if(before != -1L) assertTrue(openFiles() - before < 16L);
+            if(a instanceof MutableSequence) {
+                ((MutableSequence)views[1]).set(-1,'*');
+                assertEquals('*',a.charAt(-1));
+                ((MutableSequence)a).set(-1,s.charAt(l - 1));
+            }
+        }
+        // Closing the sequence does not close the views or their iterators.
+        for(int i = 0;i < views.length;i += 2) views[i].close();
+        for(int i = 1;i < views.length;i += 2) {
+            streq(s.substring(i % l),views[i]);
+            try(Sequence ss = views[i].subSequence(0,-1)) {streq(s.substring(i % l,l - 1),ss);}
+            views[i].close();
+        }
+        for(int i = 0;i < itrs.length;++i) {
+            final StringBuilder sb = new StringBuilder();
+            while(itrs[i].hasNext()) sb.append(itrs[i].next());
+            assertEquals(s.substring(i % l),sb.toString());
+            itrs[i].close();
+        }
+    }
+    
+    static String getConcurrentString() {return "0123456789ABCDEF \u00e9\t".repeat(5000);}
+    static void concurrent(final provider p,final appender DATA) {
+        final String s = getConcurrentString();
+        final int l = s.length(),threads = 4;
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try(Sequence a = DATA.append(p.provide()).build()) {
+            final List<Callable<Void>> tasks = new ArrayList<>();
+            for(int t = 0;t < threads;++t) {
+                final int seed = t;
+                tasks.add(() -> {
+                    for(int i = seed;i < l;i += 97) assertEquals(s.charAt(i),a.charAt(i));
+                    final char[] arr = new char[l];
+                    a.copyTo(arr,0);
+                    assertEquals(s,new String(arr));
+                    streq(s,a);
+                    try(Sequence ss = a.subSequence(seed,l - seed);
+                        SequenceIterator itr = ss.forwardIterator()) {
+                        final StringBuilder sb = new StringBuilder();
+                        while(itr.hasNext()) sb.append(itr.next());
+                        assertEquals(s.substring(seed,l - seed),sb.toString());
+                    }
+                    return null;
+                });
+            }
+            for(final Future<Void> f : pool.invokeAll(tasks)) f.get();
+            // A thread which is interrupted while reading does not break the other readers.
+            pool.submit(() -> {
+                Thread.currentThread().interrupt();
+                try {a.charAt(0);}
+                catch(final UncheckedIOException e) {}
+            }).get();
+            streq(s,a);
+            assertEquals(s.charAt(l - 1),a.charAt(-1));
+        } catch(final InterruptedException e) {
+            throw new AssertionError(e);
+        } catch(final ExecutionException e) {
+            if(e.getCause() instanceof Error) throw (Error)e.getCause();
+            throw new AssertionError(e.getCause());
+        } finally {pool.shutdown();}
+    }
+    
+    static String getDirectString() {return "ab\tc\u00e9 \u00ff".repeat(1000);}
+    /**@return A string with a byte order mark, which is decoded as a character.*/
+    static String getWideDirectString() {return "\ufeff" + getDirectString() + "\u4e2d\ud83d\ude00";}
+    /**@return The number of temporary files made by the builders.*/
+    private static int tmpFiles() {
+        final String[] files = new File(System.getProperty("user.dir"),"sequence-tmp").list();
+        return files == null? 0 : files.length;
+    }
+    /**
+     * @param LATIN An input file encoded with ISO-8859-1.
+     * @param WIDE  An input file encoded with UTF-16BE.
+     * @param COPY  Forces the builder to copy the input.
+     */
+    static void direct(final provider p,final appender LATIN,final appender WIDE,final appender COPY) {
+        final String s = getDirectString(),w = getWideDirectString();
+        int before = tmpFiles();
+        try(Sequence a = LATIN.append(p.provide()).build()) {
+            streq(s,a);
+            assertEquals('\u00ff',a.charAt(-1));
+            // Mutable sequences always copy the input.
+            assertEquals(a instanceof MutableSequence? before + 1 : before,tmpFiles());
+        }
+        before = tmpFiles();
+        try(Sequence a = WIDE.append(p.provide()).build()) {
+            assertEquals(w.length(),a.size());
+            streq(w,a);
+            assertEquals(a instanceof MutableSequence? before + 1 : before,tmpFiles());
+        }
+        before = tmpFiles();
+        try(Sequence a = COPY.append(LATIN.append(p.provide())).build()) {
+            streq(s,a);
+            assertEquals(before + 1,tmpFiles());
+        }
+    }
+    
+    static String getPageCacheString() {return "0123456789ABCDEF".repeat(1024);}
+    /**@param cached Whether the sequences read through the page cache.*/
+    static void pageCache(final provider p,final appender DATA,final boolean cached) {
+        final String s = getPageCacheString();
+        final int l = s.length();
+        final long budget = PageCache.budget();
+        // Room for a few pages of wide characters.
+        PageCache.budget(1L << 13);
+        try(Sequence a = DATA.append(p.provide()).build()) {
+            final long hits = PageCache.hits(),misses = PageCache.misses(),evictions = PageCache.evictions();
+            for(int i = 0;i < 100;++i) assertEquals(s.charAt(5),a.charAt(5));
+            try(Sequence b = a.subSequence(3,l)) {
+                // The view shares the pages of the sequence.
+                assertEquals(s.charAt(3),b.charAt(0));
+                for(int i = 0;i < l;i += 7) assertEquals(s.charAt(i),a.charAt(i));
+                for(int i = l - 1;i >= 0;i -= 13) assertEquals(s.charAt(i),a.charAt(i));
+                if(cached) {
+                    assertTrue(PageCache.hits() - hits >= 100L);
+                    assertTrue(PageCache.misses() > misses);
+                    assertTrue(PageCache.evictions() > evictions);
+                } else assertEquals(misses,PageCache.misses());
+                assertTrue(PageCache.size() <= PageCache.budget());
+                if(a instanceof MutableSequence) {
+                    // Writes through any view update the cached pages.
+                    ((MutableSequence)b).set(0,'*');
+                    assertEquals('*',a.charAt(3));
+                    ((MutableSequence)a).set(l - 3,new char[] {'x','y'});
+                    assertEquals('y',b.charAt(-2));
+                    try(MutableSequenceIterator itr = ((MutableSequence)a).forwardIterator()) {
+                        itr.set(4,'!');
+                    }
+                    assertEquals('!',b.charAt(1));
+                }
+            }
+        } finally {PageCache.budget(budget);}
+        assertThrows(IllegalArgumentException.class,() -> PageCache.budget(-1L));
+    }
+    
+    static String getCacheString() {return "caf\u00e9 \u4e2d\u6587 ".repeat(2000);}
+    /**@return The number of entries in the cache directory.*/
+    private static int entries(final File dir) {
+        final String[] files = dir.list((d,name) -> name.endsWith(".seq"));
+        return files == null? 0 : files.length;
+    }
+    /**@return The identity of the file, which changes when it is replaced.*/
+    private static Object key(final File dir) throws IOException {
+        final File[] files = dir.listFiles((d,name) -> name.endsWith(".seq"));
+        assertEquals(1,files.length);
+        return Files.readAttributes(files[0].toPath(),BasicFileAttributes.class).fileKey();
+    }
+    /**
+     * @param DATA    Reads the source through the cache directory.
+     * @param LIMIT   Limits the cache to a size smaller than one entry.
+     * @param indexed Whether the builder reads UTF-8 inputs in place.
+     */
+    static void cache(final provider p,final appender DATA,final appender LIMIT,
+                      final File src,final File dir,final boolean indexed) {
+        final String s = getCacheString(),t = "changed " + s;
+        try {
+            int before = tmpFiles();
+            final boolean ignored;
+            try(Sequence a = DATA.append(p.provide()).build()) {
+                streq(s,a);
+                ignored = indexed || a instanceof MutableSequence;
+            }
+            // Mutable and indexed sequences ignore the cache.
+            assertEquals(ignored? 0 : 1,entries(dir));
+            if(ignored) return;
+            // The entry is written to the cache directory instead of a temporary file.
+            assertEquals(before,tmpFiles());
+            final Object key = key(dir);
+            try(Sequence a = DATA.append(p.provide()).build()) {
+                streq(s,a);
+                assertEquals('\u6587',a.charAt(-2));
+                // A hit reads the entry without replacing it.
+                assertEquals(key,key(dir));
+            }
+            assertEquals(before,tmpFiles());
+            
+            // A changed source gets a new entry, and storing it deletes the
+            // partial entries left behind by processes which died long ago.
+            final File stale = new File(dir,"stale.part"),fresh = new File(dir,"fresh.part");
+            Files.write(stale.toPath(),new byte[16]);
+            Files.write(fresh.toPath(),new byte[16]);
+            stale.setLastModified(System.currentTimeMillis() - 2L * 60L * 60L * 1000L);
+            Files.writeString(src.toPath(),t,StandardCharsets.UTF_8);
+            src.setLastModified(src.lastModified() + 10000L);
+            try(Sequence a = DATA.append(p.provide()).build()) {streq(t,a);}
+            assertEquals(2,entries(dir));
+            assertFalse(stale.exists());
+            assertTrue(fresh.exists());
+            fresh.delete();
+            
+            // The least recently used entries are deleted, but never the new one.
+            Files.writeString(src.toPath(),s,StandardCharsets.UTF_8);
+            src.setLastModified(src.lastModified() + 10000L);
+            try(Sequence a = LIMIT.append(DATA.append(p.provide())).build()) {streq(s,a);}
+            assertEquals(1,entries(dir));
+            try(Sequence a = DATA.append(p.provide()).build()) {streq(s,a);}
+            assertEquals(1,entries(dir));
+        } catch(final IOException e) {throw new UncheckedIOException(e);}
+    }
+    
+    /**
+     * @return A string of one, two, three and four byte UTF-8 characters, where
+     *         the pages of 1024 characters start on both halves of a surrogate
+     *         pair.
+     */
+    static String getIndexedString() {return "a\u00e9\u4e2d\ud83d\ude00".repeat(1000);}
+    /**
+     * @param indexed Whether the builder reads UTF-8 inputs in place.
+     * @param BAD     Reads an input which is not valid UTF-8.
+     */
+    static void indexed(final provider p,final appender DATA,final appender BAD,final boolean indexed) {
+        final String s = getIndexedString();
+        final int l = s.length();
+        final int before = tmpFiles();
+        try(Sequence a = DATA.append(p.provide()).build()) {
+            final boolean mutable = a instanceof MutableSequence;
+            // Indexed sequences do not copy the input.
+            assertEquals(indexed && !mutable? before : before + 1,tmpFiles());
+            assertEquals(l,a.size());
+            for(int i = 0;i < l;++i) assertEquals(s.charAt(i),a.charAt(i));
+            for(int i = 1;i <= l;i += 7) assertEquals(s.charAt(l - i),a.charAt(-i));
+            streq(s,a);
+            final char[] arr = new char[l];
+            a.copyTo(arr,0);
+            assertEquals(s,new String(arr));
+            for(final int i : new int[] {0,1023,1024,1025,2047,2048,4999}) {
+                final char[] dst = new char[1500];
+                final int n = a.read(i,dst,0,dst.length);
+                assertEquals(Math.min(dst.length,l - i),n);
+                assertEquals(s.substring(i,i + n),new String(dst,0,n));
+                try(Sequence b = a.subSequence(i,l)) {
+                    streq(s.substring(i),b);
+                    assertEquals(s.charAt(l - 1),b.charAt(-1));
+                }
+            }
+            try(SequenceIterator itr = a.forwardIterator()) {
+                for(int i = 0;i < l;++i) assertEquals(s.charAt(i),itr.next());
+                assertFalse(itr.hasNext());
+            }
+            try(SequenceIterator itr = a.reverseIterator()) {
+                for(int i = l - 1;i >= 0;--i) assertEquals(s.charAt(i),itr.next());
+                assertFalse(itr.hasNext());
+            }
+            try(Sequence.SimpleSequenceIterator itr = a.iterator()) {
+                itr.skip(1024);
+                for(int i = 1024;i < l;++i) assertEquals(s.charAt(i),itr.next());
+            }
+            try(MutableSequence m = a.mutableCopy()) {streq(s,m);}
+            try(Sequence b = a.subSequence(1024,2049);
+                MutableSequence m = b.mutableCopy();
+                Sequence c = b.immutableCopy()) {
+                streq(s.substring(1024,2049),m);
+                streq(s.substring(1024,2049),c);
+            }
+        }
+        assertThrows(UncheckedIOException.class,() -> BAD.append(p.provide()).build());
+    }
+    
+    static String getLazyString() {return "0123456789abcdef\u00e9\u4e2d".repeat(1 << 16);}
+    /**@param BAD Reads an input which is only invalid after its first million characters.*/
+    static void lazy(final provider p,final appender DATA,final appender BAD) {
+        final String s = getLazyString();
+        final int l = s.length();
+        try(Sequence a = DATA.append(p.provide()).build()) {
+            // Reads near the start do not need the rest of the input.
+            assertEquals(s.charAt(0),a.charAt(0));
+            final char[] dst = new char[100];
+            assertEquals(dst.length,a.read(0L,dst,0,dst.length));
+            assertEquals(s.substring(0,dst.length),new String(dst));
+            try(Sequence b = a.subSequence(5,5000)) {
+                streq(s.substring(5,5000),b);
+                assertEquals(s.charAt(4999),b.charAt(-1));
+            }
+            // Reads further ahead wait for their characters.
+            for(int i = 0;i < l;i += 4099) assertEquals(s.charAt(i),a.charAt(i));
+            assertEquals(s.charAt(l - 1),a.charAt(-1));
+            assertEquals(l,a.size());
+            assertThrows(IndexOutOfBoundsException.class,() -> a.charAt(l));
+            assertEquals(10,a.read(l - 10,new char[100],0,100));
+            streq(s,a);
+        }
+        assertThrows(UncheckedIOException.class,() -> {
+            try(Sequence a = BAD.append(p.provide()).build()) {a.size();}
+        });
+    }
+    
+    static String getAsyncString() {return "0123456789abcdef\u4e2d".repeat(40000);}
+    private static <T extends Throwable> void failsWith(final Class<T> type,final CompletableFuture<?> f) {
+        assertTrue(type.isInstance(assertThrows(ExecutionException.class,() -> f.get()).getCause()));
+    }
+    static void async(final provider p,final appender DATA) {
+        final String s = getAsyncString();
+        final int l = s.length();
+        try(Sequence a = DATA.append(p.provide()).build()) {
+            // Start every read before waiting for any of them.
+            final CompletableFuture<Character> first = a.charAtAsync(0L),
+                                               middle = a.charAtAsync(l / 2),
+                                               last = a.charAtAsync(-1L);
+            final CompletableFuture<String> str = a.toStringAsync();
+            final CharBuffer cb = CharBuffer.allocate(100),
+                             db = ByteBuffer.allocateDirect(200).asCharBuffer();
+            final CompletableFuture<Integer> heap = a.readAsync(5L,cb),
+                                             direct = a.readAsync(-50L,db);
+            final char[] arr = new char[l + 2];
+            final CompletableFuture<Sequence> copy = a.copyToAsync(arr,1);
+            
+            assertEquals(s.charAt(0),first.join());
+            assertEquals(s.charAt(l / 2),middle.join());
+            assertEquals(s.charAt(l - 1),last.join());
+            assertEquals(s,str.join());
+            assertEquals(100,heap.join());
+            assertEquals(s.substring(5,105),cb.flip().toString());
+            assertEquals(50,direct.join());
+            assertEquals(s.substring(l - 50),db.flip().toString());
+            copy.join();
+            assertEquals(s,new String(arr,1,l));
+            try(Sequence b = a.subSequence(3,-2)) {
+                assertEquals(s.substring(3,l - 2),b.toStringAsync().join());
+                assertEquals(s.charAt(l - 3),b.charAtAsync(-1L).join());
+            }
+            
+            failsWith(IndexOutOfBoundsException.class,a.charAtAsync(l));
+            failsWith(IndexOutOfBoundsException.class,a.readAsync(l + 1L,cb.clear()));
+            failsWith(IllegalArgumentException.class,a.copyToAsync(new char[1],0));
+        }
+        // Pending reads keep the file open after the sequence is closed.
+        final CompletableFuture<String> pending;
+        try(Sequence a = DATA.append(p.provide()).build()) {pending = a.toStringAsync();}
+        assertEquals(s,pending.join());
+    }
+    
+    static String getCopyString() {return "0123456789abcdef\u00e9".repeat(1000) + "\u4e2d\u6587";}
+    static void copies(final provider p,final appender DATA,final String s) {
+        final int l = s.length();
+        final Sequence narrow,tail,whole;
+        final MutableSequence m;
+        try(Sequence a = DATA.append(p.provide()).build();
+            Sequence b = a.subSequence(3,-5);
+            Sequence c = a.subSequence(-10,-1)) {
+            whole = a.immutableCopy();
+            narrow = b.immutableCopy();
+            m = b.mutableCopy();
+            tail = c.mutableCopy().immutableCopy();
+        }
+        // The copies stay readable after the sequences they were copied from are closed.
+        try(whole;narrow;tail;m) {
+            streq(s,whole);
+            streq(s.substring(3,l - 5),narrow);
+            streq(s.substring(l - 10,l - 1),tail);
+            streq(s.substring(3,l - 5),m);
+            m.set(0,'x');
+            streq(s.substring(3,l - 5),narrow);
+            try(Sequence i = m.immutableCopy();
+                Sequence j = m.subSequence(1,4).immutableCopy();
+                MutableSequence k = m.subSequence(-4,-1).mutableCopy()) {
+                streq('x' + s.substring(4,l - 5),i);
+                streq(s.substring(4,7),j);
+                streq(s.substring(l - 9,l - 6),k);
+            }
+        }
+    }
+    
+    /**@return Every character of one byte, with a length which is not a multiple of a vector.*/
+    static String getWideningString() {
+        final StringBuilder sb = new StringBuilder();
+        for(int i = 0;i < 4099;++i) sb.append((char)(i * 7 & 0xFF));
+        return sb.toString();
+    }
+    static void widening(final provider p,final appender DATA,final String s) {
+        final int l = s.length();
+        try(Sequence a = DATA.append(p.provide()).build();
+            Sequence b = a.subSequence(5,-3);
+            MutableSequence m = a.mutableCopy()) {
+            streq(s,m);
+            m.set(0,"\u4e2d".repeat(l));
+            m.set(0,a);
+            streq(s,m);
+            // Reads the cached pages before the bulk writes update them.
+            assertEquals(s.charAt(9),m.charAt(9));
+            m.set(1,b);
+            final String t = s.charAt(0) + s.substring(5,l - 3) + s.substring(l - 7);
+            streq(t,m);
+            assertEquals(t.charAt(9),m.charAt(9));
+            try(Sequence n = m.immutableCopy();
+                Sequence o = m.subSequence(3,-1).immutableCopy()) {
+                streq(t,n);
+                streq(t.substring(3,l - 1),o);
+            }
+            m.set(l - 2,'\u4e2d');
+            try(Sequence n = m.immutableCopy()) {streq(t.substring(0,l - 2) + '\u4e2d' + t.charAt(l - 1),n);}
+        }
+    }
+    
+    static String getTieredString() {return "ab\u00e9\u4e2d\ud83d\ude00".repeat(1000);}
+    private static Tier tier(final String s,final SequenceBuilder b) {
+        try(Sequence a = b.build()) {streq(s,a);}
+        return ((TieredSequenceBuilder)b).tier();
+    }
+    /**@param BAD Reads an input which is not valid in its charset.*/
+    static void tiered(final provider p,final appender DATA,final appender BAD) {
+        final String s = getTieredString();
+        final TieredSequenceBuilder b = ((TieredSequenceBuilder)DATA.append(p.provide())).heapLimit(null);
+        assertEquals(Tier.HEAP,tier(s,b));
+        assertEquals(Tier.OFF_HEAP,tier(s,b.heapLimit(0L)));
+        assertEquals(Tier.FILE,tier(s,b.offHeapLimit(0L)));
+        b.heapLimit(null).offHeapLimit(null);
+        try(Sequence a = b.build()) {
+            assertTrue(TieredSequenceBuilder.heapUsed() >= s.length() * 2L);
+        }
+        
+        // Inputs spill to the next tier when a budget is full, and return once it
+        // has room again.
+        final long heap = TieredSequenceBuilder.heapBudget(),
+                   offHeap = TieredSequenceBuilder.offHeapBudget();
+        try {
+            TieredSequenceBuilder.heapBudget(0L);
+            assertEquals(Tier.OFF_HEAP,tier(s,b));
+            TieredSequenceBuilder.offHeapBudget(0L);
+            assertEquals(Tier.FILE,tier(s,b));
+            TieredSequenceBuilder.heapBudget(heap);
+            assertEquals(Tier.HEAP,tier(s,b));
+        } finally {
+            TieredSequenceBuilder.heapBudget(heap);
+            TieredSequenceBuilder.offHeapBudget(offHeap);
+        }
+        assertThrows(IllegalArgumentException.class,() -> TieredSequenceBuilder.heapBudget(-1L));
+        assertThrows(IllegalArgumentException.class,() -> b.heapLimit(-1L).build());
+        b.heapLimit(null);
+        
+        // Copies of sequences in direct memory do not read the input file.
+        try(Sequence a = b.heapLimit(0L).build();
+            Sequence c = a.subSequence(3,-2);
+            MutableSequence m = c.mutableCopy();
+            Sequence i = c.immutableCopy()) {
+            final String t = s.substring(3,s.length() - 2);
+            streq(t,m);
+            streq(t,i);
+            m.set(0,'*');
+            assertEquals('*',m.charAt(0));
+            assertEquals(t.charAt(0),c.charAt(0));
+        }
+        b.heapLimit(null);
+        
+        for(final Long limit : new Long[] {null,0L})
+            assertThrows(UncheckedIOException.class,() -> ((TieredSequenceBuilder)BAD.append(p.provide())).heapLimit(limit).build());
+    }
+    
     static String getSimpleItrString() {return getTestBuilderString();}
     private static void itrbase(final String s,final Sequence a) {
         int i = 0;
@@ -231,6 +788,22 @@ final class TestUtils {
                 }
             });
         }
+        i = 2;
+        try(Sequence.SimpleSequenceIterator itr = a.iterator()) {
+            itr.skip(2);
+            for(int c;(c = itr.nextChar()) != Sequence.EOS;)
+                assertEquals(s.charAt(i++),c);
+        }
+        assertEquals(s.length(),i);
+        final StringBuilder sb = new StringBuilder();
+        a.forEachChar(sb::append);
+        assertEquals(s,sb.toString());
+        sb.setLength(0);
+        try(Sequence.SimpleSequenceIterator itr = a.iterator()) {
+            itr.skip(2);
+            itr.forEachChar(sb::append);
+        }
+        assertEquals(s.substring(2),sb.toString());
     }
     static void iterator(final provider p,final appender DATA) {
         final String str = getSimpleItrString();
@@ -253,12 +826,31 @@ final class TestUtils {
                 assertEquals(si,i.index());
                 assertEquals(si,i.offset());
                 assertEquals(s.charAt((int)si),i.peek());
+                assertEquals(s.charAt((int)si),i.peekChar());
                 assertEquals(s.charAt((int)si++),i.next());
             }
             assertEquals((long)s.length(),si,"forwardIterator().hasNext() stopped early");
             assertNull(i.next());
             assertNull(i.peek());
         }
+        try(SequenceIterator i = a.forwardIterator()) {
+            long si = 0L;
+            for(int c;(c = i.nextChar()) != Sequence.EOS;++si) {
+                assertEquals(si + 1L,i.index());
+                assertEquals(s.charAt((int)si),c);
+            }
+            assertEquals((long)s.length(),si,"forwardIterator().nextChar() stopped early");
+            assertFalse(i.hasNext());
+            assertEquals(Sequence.EOS,i.nextChar());
+            assertEquals(Sequence.EOS,i.peekChar());
+            assertNull(i.next());
+        }
+        try(SequenceIterator i = a.forwardIterator()) {
+            final StringBuilder sb = new StringBuilder();
+            i.forEachChar(sb::append);
+            assertEquals(s,sb.toString());
+            assertFalse(i.hasNext());
+        }
         try(SequenceIterator i = a.reverseIterator()) {
             assertEquals(a,i.getParent());
             long si = s.length();
@@ -269,12 +861,29 @@ final class TestUtils {
                 assertEquals(--si,i.index());
                 assertEquals(s.length() - si - 1L,i.offset());
                 assertEquals(s.charAt((int)si),i.peek());
+                assertEquals(s.charAt((int)si),i.peekChar());
                 assertEquals(s.charAt((int)si),i.next());
             }
             assertEquals(0L,si,"reverseIterator().hasNext() stopped early");
             assertNull(i.next());
             assertNull(i.peek());
         }
+        try(SequenceIterator i = a.reverseIterator()) {
+            long si = s.length();
+            for(int c;(c = i.nextChar()) != Sequence.EOS;)
+                assertEquals(s.charAt((int)--si),c);
+            assertEquals(0L,si,"reverseIterator().nextChar() stopped early");
+            assertFalse(i.hasNext());
+            assertEquals(Sequence.EOS,i.nextChar());
+            assertEquals(Sequence.EOS,i.peekChar());
+            assertNull(i.next());
+        }
+        try(SequenceIterator i = a.reverseIterator()) {
+            final StringBuilder sb = new StringBuilder();
+            i.forEachChar(sb::append);
+            assertEquals(new StringBuilder(s).reverse().toString(),sb.toString());
+            assertFalse(i.hasNext());
+        }
     }
     private static void itrJump(final long length,Sequence a) {
         try(SequenceIterator f = a.forwardIterator();
@@ -595,6 +1204,60 @@ final class TestUtils {
         }
     }
     
+    /**
+     * @return A long string of whitespace runs which separate single characters,
+     *         so that the scanning kernels cross many vector boundaries.
+     */
+    public static String getScanString() {
+        final String ws = " \t\n\u2003\r",tk = "ab\u00a0\u4e2dx";
+        final StringBuilder sb = new StringBuilder();
+        for(int i = 0;i < 200;++i) {
+            for(int j = (i * 7) % 71;j > 0;--j) sb.append(ws.charAt((i + j) % ws.length()));
+            sb.append(tk.charAt(i % tk.length()));
+        }
+        return sb.toString();
+    }
+    public static void scan(final provider p,final appender DATA) {
+        final String s = getScanString();
+        try(Sequence a = DATA.append(p.provide()).build()) {
+            try(SequenceIterator f = a.forwardIterator()) {
+                for(int i = 0;;++i) {
+                    while(i < s.length() && Character.isWhitespace(s.charAt(i))) ++i;
+                    final Character c = f.skipWS();
+                    if(i == s.length()) {assertNull(c); break;}
+                    assertEquals(s.charAt(i),c);
+                    assertEquals(i,f.index());
+                    f.next();
+                }
+            }
+            try(SequenceIterator r = a.reverseIterator()) {
+                for(int i = s.length() - 1;;--i) {
+                    while(i >= 0 && Character.isWhitespace(s.charAt(i))) --i;
+                    final Character c = r.skipWS();
+                    if(i < 0) {assertNull(c); break;}
+                    assertEquals(s.charAt(i),c);
+                    assertEquals(i,r.index());
+                    r.next();
+                }
+            }
+            for(final char c : new char[] {'a','\u4e2d','x','?'}) {
+                try(SequenceIterator f = a.forwardIterator();
+                    SequenceIterator r = a.reverseIterator()) {
+                    for(int i = s.indexOf(c);i != -1;i = s.indexOf(c,i + 1)) {
+                        assertTrue(f.find(c));
+                        assertEquals(i + 1,f.index());
+                    }
+                    assertFalse(f.find(c));
+                    for(int i = s.lastIndexOf(c);i != -1;i = s.lastIndexOf(c,i - 1)) {
+                        assertTrue(r.find(c));
+                        assertEquals(i - 1,r.index());
+                    }
+                    assertFalse(r.find(c));
+                }
+            }
+        }
+    }
+    
     public static String getMutableSubSequenceString() {return getTestBuilderString();}
     public static void mutableSubSequence(final provider p,final appender DATA) {
         try(MutableSequence ms = (MutableSequence)DATA.append(p.provide()).build()) {
@@ -792,6 +1455,120 @@ final class TestUtils {
             }
         }
     }
+    
+    static String getCacheRaceString() {return "a".repeat(1 << 12);}
+    /**Reads a page of the cache while another thread writes to it, which must not leave the page stale.*/
+    static void cacheRace(final provider p,final appender DATA) throws InterruptedException {
+        try(MutableSequence m = (MutableSequence)DATA.append(p.provide()).build()) {
+            for(int i = 0;i < 2000;++i) {
+                PageCache.clear();
+                final char c = (char)('b' + i % 20);
+                final Thread t = new Thread(() -> m.set(100L,c));
+                t.start();
+                m.charAt(100L);
+                t.join();
+                assertEquals(c,m.charAt(100L));
+            }
+        }
+    }
+    
+    public static String getDurabilityString() {return "0123456789abcdef\u4e2d".repeat(2000);}
+    private static MutableFileSequenceBuilder mfsb(final provider p) {return (MutableFileSequenceBuilder)p.provide();}
+    public static void durability(final provider p,final appender DATA) {
+        final String s = getDurabilityString();
+        final int l = s.length();
+        for(final Durability d : Durability.values()) {
+            for(final Integer buffer : new Integer[] {0,100,null}) {
+                final StringBuilder t = new StringBuilder(s);
+                try(MutableSequence a = (MutableSequence)DATA.append(
+                        mfsb(p).durability(d).writeBuffer(buffer).syncInterval(1L)
+                    ).build()) {
+                    a.set(1,'*');
+                    t.setCharAt(1,'*');
+                    a.set(l / 3,"+".repeat(5000).toCharArray());
+                    t.replace(l / 3,l / 3 + 5000,"+".repeat(5000));
+                    a.set(-3,"~~");
+                    t.replace(l - 3,l - 1,"~~");
+                    try(MutableSequenceIterator itr = a.forwardIterator()) {itr.set('#');}
+                    t.setCharAt(0,'#');
+                    // The writes are visible to every kind of read before they are flushed.
+                    final String u = t.toString();
+                    streq(u,a);
+                    try(Sequence b = a.subSequence(l / 3 - 1,l / 3 + 5001)) {
+                        streq(u.substring(l / 3 - 1,l / 3 + 5001),b);
+                    }
+                    try(SequenceIterator itr = a.reverseIterator()) {
+                        for(int i = l - 1;i >= 0;--i) assertEquals(u.charAt(i),itr.next());
+                    }
+                    try(Sequence c = a.immutableCopy()) {streq(u,c);}
+                    try(MutableSequence c = a.mutableCopy()) {streq(u,c);}
+                    assertEquals(u,a.toStringAsync().join());
+                    a.set(2,'!');
+                    t.setCharAt(2,'!');
+                    streq(t.toString(),a.flush());
+                }
+            }
+        }
+        // Concurrent writers share the syncs of a group commit.
+        final int n = 4;
+        try(MutableSequence a = (MutableSequence)DATA.append(mfsb(p).durability(Durability.GROUP)).build()) {
+            final ExecutorService e = Executors.newFixedThreadPool(n);
+            try {
+                final List<Future<?>> f = new ArrayList<>();
+                for(int k = 0;k < n;++k) {
+                    final int first = k;
+                    f.add(e.submit(() -> {for(int i = first;i < 1000;i += n) a.set(i,'@');}));
+                }
+                for(final Future<?> x : f) x.get();
+            } catch(final InterruptedException|ExecutionException x) {throw new AssertionError(x);}
+            finally {e.shutdown();}
+            streq("@".repeat(1000) + s.substring(1000),a);
+        }
+        assertThrows(IllegalArgumentException.class,() -> DATA.append(mfsb(p).writeBuffer(-1)).build());
+        assertThrows(IllegalArgumentException.class,() -> DATA.append(mfsb(p).syncInterval(0L)).build());
+    }
+    
+    public static String getSnapshotString() {return "0123456789abcdef\u4e2d".repeat(1000);}
+    public static void snapshot(final provider p,final appender DATA) {
+        final String s = getSnapshotString();
+        final int l = s.length();
+        final StringBuilder t = new StringBuilder(s);
+        final Sequence c;
+        try(MutableSequence ms = (MutableSequence)DATA.append(p.provide()).build();
+            Sequence a = ms.snapshot()) {
+            try(MutableSequence v = ms.subSequence(100,-100);
+                Sequence b = v.snapshot()) {
+                // Write through the sequence, a view and an iterator.
+                ms.set(0,'*');
+                t.setCharAt(0,'*');
+                ms.set(l / 2,"^".repeat(3000).toCharArray());
+                t.replace(l / 2,l / 2 + 3000,"^".repeat(3000));
+                v.set(5,"~".repeat(2000));
+                t.replace(105,2105,"~".repeat(2000));
+                try(MutableSequenceIterator itr = ms.reverseIterator()) {
+                    itr.set('#');
+                    t.setCharAt(l - 1,'#');
+                }
+                streq(t.toString(),ms);
+                streq(s,a);
+                streq(s.substring(100,l - 100),b);
+                try(Sequence d = a.subSequence(50,5000)) {streq(s.substring(50,5000),d);}
+                try(SequenceIterator itr = b.reverseIterator()) {
+                    for(int i = l - 101;i >= 100;--i) assertEquals(s.charAt(i),itr.next());
+                    assertFalse(itr.hasNext());
+                }
+                try(MutableSequence m = b.mutableCopy()) {streq(s.substring(100,l - 100),m);}
+                // A later snapshot sees the earlier writes, but not the later ones.
+                c = ms.snapshot();
+                final String u = t.toString();
+                ms.set(1,"+".repeat(l - 2));
+                assertEquals(s.charAt(1),a.charAt(1));
+                streq(u,c);
+            }
+        }
+        // A snapshot stays readable after its source is closed.
+        try(c) {assertEquals('*',c.charAt(0));}
+    }
 }
 
 
@@ -0,0 +1,121 @@
+package test;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import sequence.SequenceBuilder;
+import sequence.TieredSequenceBuilder;
+import test.TestUtils.provider;
+
+class TieredSequenceTest {
+    provider p() {return () -> new TieredSequenceBuilder();}
+    TieredSequenceBuilder tsb(final SequenceBuilder sb) {return (TieredSequenceBuilder)sb;}
+    
+    @Test
+    void testBuilder() {
+        TestUtils.testBuilder(
+            p(),
+            b -> tsb(b).data(FileSequenceTest.write(TestUtils.getTestBuilderString())),
+            b -> tsb(b).start((long)TestUtils.getTestBuilderStart()),
+            b -> tsb(b).start((long)TestUtils.getTestBuilderFakeStart()),
+            b -> tsb(b).end((long)TestUtils.getTestBuilderEnd()),
+            b -> tsb(b).end((long)TestUtils.getTestBuilderFakeEnd()),
+            b -> tsb(b).range((long)TestUtils.getTestBuilderStart(),(long)TestUtils.getTestBuilderEnd()),
+            b -> tsb(b).range((long)TestUtils.getTestBuilderFakeStart(),(long)TestUtils.getTestBuilderFakeEnd()),
+            b -> tsb(b).length((long)TestUtils.getTestBuilderLength()),
+            b -> tsb(b).offset((long)TestUtils.getTestBuilderStart(),(long)TestUtils.getTestBuilderLength()),
+            b -> tsb(b).offset((long)TestUtils.getTestBuilderFakeStart(),(long)TestUtils.getTestBuilderFakeLength()),
+            b -> tsb(b).start((long)TestUtils.getTestBuilderString().length() + 1L),
+            b -> tsb(b).start((long)-TestUtils.getTestBuilderString().length() - 1L),
+            b -> tsb(b).length(-1L),
+            b -> tsb(b).offset(-1L,2L),
+            b -> tsb(b).end((long)TestUtils.getTestBuilderString().length() + 1L),
+            b -> tsb(b).end((long)-TestUtils.getTestBuilderString().length() - 1L),
+            b -> tsb(b).start(2L).end(1L)
+        );
+    }
+    
+    @Test
+    void testLength() {
+        final String s = TestUtils.getLengthString();
+        TestUtils.length(p(),b -> tsb(b).data(FileSequenceTest.write(s)));
+    }
+    
+    @Test
+    void testCharAt() {
+        final String s = TestUtils.getCharAtString();
+        final long start = TestUtils.getCharAtStart();
+        final long end = TestUtils.getCharAtEnd();
+        TestUtils.charAt(
+            p(),
+            b -> tsb(b).data(FileSequenceTest.write(s)),
+            b -> tsb(b).start(start),
+            b -> tsb(b).end(end)
+        );
+    }
+    
+    @Test
+    void testRead() {
+        final String s = TestUtils.getReadString();
+        TestUtils.read(p(),b -> tsb(b).data(FileSequenceTest.write(s)));
+    }
+    
+    @Test
+    void testAsync() {
+        final String s = TestUtils.getAsyncString();
+        TestUtils.async(p(),b -> tsb(b).data(FileSequenceTest.write(s)));
+    }
+    
+    @Test
+    void testTranscode() {
+        final String s = TestUtils.getTranscodeString();
+        TestUtils.transcode(
+            p(),
+            b -> tsb(b).data(FileSequenceTest.write(s)),
+            b -> tsb(b).end(s.length() + 1L)
+        );
+    }
+    
+    @Test
+    void testSubSequence() {
+        final String s = TestUtils.getSubSequenceString();
+        TestUtils.subSequence(p(),b -> tsb(b).data(FileSequenceTest.write(s)));
+    }
+    
+    @Test
+    void testTiered() {
+        final String s = TestUtils.getTieredString();
+        TestUtils.tiered(
+            p(),
+            b -> tsb(b).data(FileSequenceTest.write(s)),
+            // A single byte above 0x7F is not valid UTF-8.
+            b -> tsb(b).data(FileSequenceTest.write("é" + s,StandardCharsets.ISO_8859_1))
+                       .charset(StandardCharsets.UTF_8)
+        );
+    }
+    
+    @Test
+    void testIterator() {
+        {
+            final String s = TestUtils.getSimpleItrString();
+            TestUtils.iterator(p(),b -> tsb(b).data(FileSequenceTest.write(s)));
+        }
+        {
+            final String s = TestUtils.getItr1();
+            TestUtils.itr1(p(),b -> tsb(b).data(FileSequenceTest.write(s)));
+        }
+        {
+            final String s = TestUtils.getItr2();
+            TestUtils.itr2(p(),b -> tsb(b).data(FileSequenceTest.write(s)));
+        }
+        {
+            final String s = TestUtils.getItr3();
+            TestUtils.itr3(p(),b -> tsb(b).data(FileSequenceTest.write(s)));
+        }
+    }
+    
+    @Test
+    void testScan() {
+        final String s = TestUtils.getScanString();
+        TestUtils.scan(p(),b -> tsb(b).data(FileSequenceTest.write(s)));
+    }
+}
\ No newline at end of file
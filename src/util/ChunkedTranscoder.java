@@ -0,0 +1,251 @@
+package util;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Transcodes files into a {@linkplain FixedSizeCharset} by decoding chunks of
+ * the source in parallel.
+ * <p>
+ * The source is split into chunks which start at character boundaries. The
+ * first pass counts the characters of each chunk and checks whether any of them
+ * needs two bytes, which determines the output charset and the offset of each
+ * chunk in the output. UTF-8 chunks are counted from their lead bytes, and the
+ * chunks of other charsets are decoded. The second pass decodes the chunks and
+ * writes each one at its offset, which also reports malformed input.
+ * 
+ * @author AzureTriple
+ */
+final class ChunkedTranscoder {
+    private ChunkedTranscoder() {}
+    
+    /**The approximate number of bytes of the source in each chunk.*/
+    static final int CHUNK = 1 << 22;
+    /**The number of bytes decoded at once by each task.*/
+    static final int BLOCK = 1 << 16;
+    
+    /**The ways in which a charset can be split into chunks.*/
+    enum Split {
+        /**The charset is stateful or its boundaries cannot be found.*/
+        NONE,
+        /**Every byte is a character.*/
+        ANY,
+        UTF_8,
+        UTF_16BE,
+        UTF_16LE,
+        UTF_32;
+        
+        static Split of(final Charset cs) {
+            if(cs.equals(StandardCharsets.UTF_8)) return UTF_8;
+            if(cs.equals(StandardCharsets.UTF_16BE)) return UTF_16BE;
+            if(cs.equals(StandardCharsets.UTF_16LE)) return UTF_16LE;
+            if(cs.name().equals("UTF-32BE") || cs.name().equals("UTF-32LE")) return UTF_32;
+            return cs.canEncode() && cs.newEncoder().maxBytesPerChar() == 1f? ANY : NONE;
+        }
+    }
+    
+    /**
+     * @return The index of the first character boundary at or after the index,
+     *         which is also at or after <code>min</code>.
+     */
+    static long align(final FileChannel in,final Split split,long i,final long min)
+                      throws IOException {
+        if(i <= min) return min;
+        final ByteBuffer b = ByteBuffer.allocate(4);
+        switch(split) {
+            case UTF_8 -> {
+                // Skip the continuation bytes.
+                in.read(b,i);
+                for(int j = 0;j < b.position() && (b.get(j) & 0xC0) == 0x80;++j) ++i;
+            }
+            case UTF_16BE,UTF_16LE -> {
+                // Do not separate the halves of a surrogate pair.
+                in.read(b.limit(2),i &= -2L);
+                if(b.position() == 2) {
+                    final char c = split == Split.UTF_16BE? b.getChar(0)
+                                                          : (char)(b.get(1) << 8 | b.get(0) & 0xFF);
+                    if(Character.isLowSurrogate(c)) i += 2L;
+                }
+            }
+            case UTF_32 -> i &= -4L;
+            default -> {}
+        }
+        return Math.max(i,min);
+    }
+    
+    /**Receives the characters decoded from a chunk.*/
+    @FunctionalInterface
+    private interface Sink {void accept(CharBuffer C) throws IOException;}
+    
+    /**Decodes the bytes in the range <code>[begin,end)</code> of the source.*/
+    private static void decode(final FileChannel in,final long begin,final long end,
+                               final Charset cs,final Sink sink) throws IOException {
+        final CharsetDecoder d = cs.newDecoder();
+        final ByteBuffer I = ByteBuffer.allocate(BLOCK);
+        final CharBuffer C = CharBuffer.allocate(BLOCK);
+        long pos = begin;
+        CoderResult r;
+        do {
+            I.limit((int)Math.min(I.capacity(),I.position() + end - pos));
+            while(I.hasRemaining()) {
+                final int n = in.read(I,pos);
+                if(n == -1) throw new EOFException();
+                pos += n;
+            }
+            r = d.decode(I.flip(),C,pos == end);
+            I.compact();
+            if(r.isError()) r.throwException();
+            sink.accept(C.flip());
+            C.clear();
+        } while(pos != end || r.isOverflow());
+        do {
+            r = d.flush(C);
+            sink.accept(C.flip());
+            C.clear();
+        } while(r.isOverflow());
+    }
+    
+    /**
+     * Counts the characters in the range <code>[begin,end)</code> of a UTF-8
+     * source without decoding it. Every byte which is not a continuation byte
+     * starts a character, and the characters of four bytes decode to surrogate
+     * pairs. The leads from <code>0xC4</code> up start characters above
+     * <code>0xFF</code>.
+     * 
+     * @param wide Set to <code>true</code> at index <code>c</code> iff any of the
+     *             characters needs two bytes.
+     * 
+     * @return The number of characters.
+     */
+    private static long scan(final FileChannel in,final long begin,final long end,
+                             final boolean[] wide,final int c) throws IOException {
+        final ByteBuffer I = ByteBuffer.allocate(BLOCK);
+        final byte[] a = I.array();
+        long count = 0L;
+        int max = 0;
+        for(long pos = begin;pos != end;) {
+            final int n = in.read(I.clear().limit((int)Math.min(BLOCK,end - pos)),pos);
+            if(n == -1) throw new EOFException();
+            pos += n;
+            for(int i = 0;i < n;++i) {
+                final int b = a[i] & 0xFF;
+                if((b & 0xC0) != 0x80) ++count;
+                if(b >= 0xF0) ++count;
+                max = Math.max(max,b);
+            }
+        }
+        wide[c] = max >= 0xC4;
+        return count;
+    }
+    
+    /**Runs the tasks on the pool and rethrows the first exception raised by them.*/
+    private static void run(final ForkJoinPool pool,final List<Callable<Void>> tasks)
+                            throws IOException {
+        final List<Future<Void>> results = new ArrayList<>(tasks.size());
+        for(final Callable<Void> t : tasks) results.add(pool.submit(t));
+        try {for(final Future<Void> f : results) f.get();}
+        catch(final InterruptedException e) {
+            for(final Future<Void> f : results) f.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch(final ExecutionException e) {
+            for(final Future<Void> f : results) f.cancel(true);
+            final Throwable c = e.getCause();
+            // The pool wraps checked exceptions.
+            for(Throwable t = c;t != null;t = t.getCause())
+                if(t instanceof IOException)
+                    throw (IOException)t;
+            if(c instanceof RuntimeException) throw (RuntimeException)c;
+            if(c instanceof Error) throw (Error)c;
+            throw new IOException(c);
+        }
+    }
+    
+    /**
+     * Transcodes the source file into the destination file.
+     * 
+     * @param to The charset of the destination, which must be one or two bytes
+     *           wide, or <code>null</code> to use the smallest possible charset.
+     * 
+     * @return The charset of the destination.
+     */
+    static FixedSizeCharset transfer(final File src,final File dst,final Charset cs,
+                                     final FixedSizeCharset to,final ForkJoinPool pool)
+                                     throws IOException {
+        final Split split = Split.of(cs);
+        try(FileChannel in = FileChannel.open(src.toPath(),READ);
+            FileChannel out = FileChannel.open(dst.toPath(),WRITE,CREATE,TRUNCATE_EXISTING)) {
+            final long size = in.size();
+            final int n = (int)Math.max(1L,(size + CHUNK - 1L) / CHUNK);
+            final long[] bounds = new long[n + 1];
+            for(int i = 1;i < n;++i) bounds[i] = align(in,split,(long)i * CHUNK,bounds[i - 1]);
+            bounds[n] = size;
+            
+            final long[] counts = new long[n];
+            final boolean[] wide = new boolean[n];
+            final List<Callable<Void>> count = new ArrayList<>(n);
+            for(int i = 0;i < n;++i) {
+                final int c = i;
+                count.add(() -> {
+                    if(split == Split.UTF_8) counts[c] = scan(in,bounds[c],bounds[c + 1],wide,c);
+                    else decode(in,bounds[c],bounds[c + 1],cs,C -> {
+                        counts[c] += C.remaining();
+                        if(to == null && !wide[c])
+                            for(int j = C.position();j < C.limit();++j)
+                                if(C.get(j) > 0xFF) {wide[c] = true; break;}
+                    });
+                    return null;
+                });
+            }
+            run(pool,count);
+            
+            FixedSizeCharset fscs = to;
+            if(fscs == null) {
+                fscs = FixedSizeCharset.Fixed_1;
+                for(final boolean w : wide) if(w) {fscs = FixedSizeCharset.Fixed_2; break;}
+            }
+            final boolean big = fscs.size == 2;
+            final List<Callable<Void>> write = new ArrayList<>(n);
+            long offset = 0L;
+            for(int i = 0;i < n;++i) {
+                final int c = i;
+                final long o = offset;
+                offset += counts[i] * fscs.size;
+                write.add(() -> {
+                    final ByteBuffer O = ByteBuffer.allocate(BLOCK << 1);
+                    final long[] pos = {o};
+                    decode(in,bounds[c],bounds[c + 1],cs,C -> {
+                        O.clear();
+                        if(big) O.asCharBuffer().put(C);
+                        else while(C.hasRemaining()) O.put((byte)C.get());
+                        O.position(big? C.limit() << 1 : C.limit()).flip();
+                        while(O.hasRemaining()) pos[0] += out.write(O,pos[0]);
+                    });
+                    return null;
+                });
+            }
+            run(pool,write);
+            return fscs;
+        }
+    }
+}
\ No newline at end of file
@@ -1,5 +1,10 @@
 package util;
 
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
@@ -15,6 +20,9 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CharsetEncoder;
 
@@ -52,20 +60,29 @@ public final class FileUtils {
     static BufferedOutputStream bos(final File f) throws FileNotFoundException {
         return bos(new FileOutputStream(f));
     }
+    /**
+     * Overwrites the destination with the characters of the source, without
+     * truncating it first, and then truncates it to the bytes written.
+     */
     static void writeAndTruncateCoded(final File f,final CharsetDecoder d,
-                                             final File t,final CharsetEncoder e)
-                                             throws IOException {
-        try(FileInputStream fis = new FileInputStream(t);
-            BufferedReader I = bisr(fis,d);
-            BufferedWriter O = bosw(t,e)) {
-            fis.getChannel().truncate(I.transferTo(O));
+                                      final File t,final CharsetEncoder e)
+                                      throws IOException {
+        try(FileChannel out = FileChannel.open(t.toPath(),WRITE,CREATE);
+            BufferedReader I = bisr(f,d);
+            BufferedWriter O = bw(Channels.newWriter(out,e,-1))) {
+            I.transferTo(O);
+            O.flush();
+            out.truncate(out.position());
         }
     }
+    /**
+     * Overwrites the destination with the bytes of the source, without truncating
+     * it first, and then truncates it to the length of the source.
+     */
     static void writeAndTruncate(final File f,final File t) throws IOException {
-        try(FileOutputStream fos = new FileOutputStream(t);
-            BufferedInputStream I = bis(f);
-            BufferedOutputStream O = bos(fos)) {
-            fos.getChannel().truncate(I.transferTo(O));
+        try(FileChannel in = FileChannel.open(f.toPath(),READ);
+            FileChannel out = FileChannel.open(t.toPath(),WRITE,CREATE)) {
+            out.truncate(transfer(in,0L,Long.MAX_VALUE,out,0L));
         }
     }
     /**
@@ -95,18 +112,56 @@ public final class FileUtils {
      * @throws IOException
      */
     public static void transferDirect(final File f,final File t) throws IOException {
-        try(BufferedInputStream I = bis(f);
-            BufferedOutputStream O = bos(t)) {
-            I.transferTo(O);
+        try(FileChannel in = FileChannel.open(f.toPath(),READ);
+            FileChannel out = FileChannel.open(t.toPath(),WRITE,CREATE,TRUNCATE_EXISTING)) {
+            transfer(in,0L,Long.MAX_VALUE,out,0L);
         }
     }
-    static final int BUFFER_SCALAR = 13;
+    /**The size of the buffer which copies bytes when the channels cannot transfer them.*/
+    static final int BUFFER_SCALAR = 20;
     static final int BUFFER_SIZE = 1 << BUFFER_SCALAR;
     /**
-     * Transfers bytes between files.
+     * Copies bytes from one channel to another with
+     * {@linkplain FileChannel#transferTo(long,long,java.nio.channels.WritableByteChannel)},
+     * which lets the kernel copy them between files without reading them into
+     * memory. Whatever the channels cannot transfer is copied through a direct
+     * buffer instead. The position of the source is not moved, and the
+     * destination is left at the position after the last byte written.
+     * 
+     * @param src    Source channel.
+     * @param pos    Index of the first byte in the source, inclusive.
+     * @param length Maximum number of bytes to copy.
+     * @param dst    Destination channel.
+     * @param at     Index in the destination of the first byte written.
+     * 
+     * @return The number of bytes copied, which is less than <code>length</code>
+     *         iff the source ends first.
+     * 
+     * @throws IOException
+     */
+    public static long transfer(final FileChannel src,long pos,final long length,
+                                final FileChannel dst,final long at)
+                                throws IOException {
+        long left = Math.min(length,Math.max(0L,src.size() - pos));
+        final long total = left;
+        dst.position(at);
+        for(long n;left != 0L && (n = src.transferTo(pos,left,dst)) != 0L;left -= n) pos += n;
+        if(left != 0L) {
+            final ByteBuffer buf = ByteBuffer.allocateDirect((int)Math.min(left,BUFFER_SIZE));
+            for(int n;left != 0L && (n = src.read(buf.clear().limit((int)Math.min(left,buf.capacity())),pos)) != -1;) {
+                for(buf.flip();buf.hasRemaining();) dst.write(buf);
+                pos += n;
+                left -= n;
+            }
+        }
+        return total - left;
+    }
+    /**
+     * Transfers bytes between files. The destination is not truncated, so its
+     * bytes outside of the written range are kept.
      * 
      * @param src      Source file.
-     * @param dst      Destination file.
+     * @param dst      Destination file, which is created if it does not exist.
      * @param srcStart Index of the first byte in the source file, inclusive.
      * @param dstStart Index of the first byte in the destination file, inclusive.
      * @param length   Maximum number of bytes to transfer.
@@ -120,7 +175,6 @@ public final class FileUtils {
                                       final long length)
                                       throws IOException,SecurityException,
                                              IllegalArgumentException {
-        if(length == 0L) return;
         if(length < 0L)
             throw new IllegalArgumentException(
                 "Negative length: %d"
@@ -136,21 +190,10 @@ public final class FileUtils {
                 "Negative destination start index: %d"
                 .formatted(dstStart)
             );
-        try(FileInputStream I = new FileInputStream(src);
-            FileOutputStream O = new FileOutputStream(dst)) {
-            I.getChannel().position(srcStart);
-            O.getChannel().position(dstStart);
-            final byte[] buf = new byte[BUFFER_SIZE];
-            if(length > BUFFER_SIZE) {
-                long i = length >>> BUFFER_SCALAR;
-                do {
-                    final int read = I.read(buf,0,BUFFER_SIZE);
-                    if(read <= 0) return;
-                    O.write(buf,0,read);
-                } while(--i != 0L);
-            }
-            final int read = I.read(buf,0,(int)(length & (BUFFER_SIZE - 1)));
-            if(read > 0) O.write(buf,0,read);
+        if(length == 0L) return;
+        try(FileChannel I = FileChannel.open(src.toPath(),READ);
+            FileChannel O = FileChannel.open(dst.toPath(),WRITE,CREATE)) {
+            transfer(I,srcStart,length,O,dstStart);
         }
     }
 }
\ No newline at end of file
@@ -1,26 +1,31 @@
 package util;
 
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
 import static util.FileUtils.bisr;
 import static util.FileUtils.transferCoded;
 import static util.FileUtils.transferDirect;
-import static util.FileUtils.writeAndTruncate;
 import static util.FileUtils.writeAndTruncateCoded;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
 
 import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CharsetEncoder;
 import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 
 /**
@@ -118,11 +123,11 @@ public final class FixedSizeCharset extends Charset {
         @Override
         void arrLoop(final byte[] ia,final char[] oa,
                      final int [] indices) {
-            oa[indices[1]++] = (char)ia[indices[0]++];
+            oa[indices[1]++] = (char)(ia[indices[0]++] & 0xFF);
         }
         @Override
         void bufLoop(final ByteBuffer I,final CharBuffer O) {
-            O.put((char)I.get());
+            O.put((char)(I.get() & 0xFF));
         }
     }
     private static final class D2 extends D {
@@ -137,14 +142,14 @@ public final class FixedSizeCharset extends Charset {
                      final int [] indices) {
             oa[indices[1]++] = (char)(
                 ia[indices[0]++] << 8 |
-                ia[indices[0]++]
+                ia[indices[0]++] & 0xFF
             );
         }
         @Override
         void bufLoop(final ByteBuffer I,final CharBuffer O) {
             O.put((char)(
                 I.get() << 8 |
-                I.get()
+                I.get() & 0xFF
             ));
         }
     }
@@ -162,19 +167,20 @@ public final class FixedSizeCharset extends Charset {
                      final int [] indices) {
             oa[indices[1]++] = (char)(
                 ia[indices[0]++] << 8 |
-                ia[indices[0]++]
+                ia[indices[0]++] & 0xFF
+            );
+            oa[indices[1]++] = (char)(
+                ia[indices[0]++] & 0xFF
             );
-            oa[indices[1]++] = (char)
-                ia[indices[0]++];
         }
         @Override
         void bufLoop(final ByteBuffer I,final CharBuffer O) {
             O.put((char)(
                 I.get() << 8 |
-                I.get()
-            )).put((char)
-                I.get()
-            );
+                I.get() & 0xFF
+            )).put((char)(
+                I.get() & 0xFF
+            ));
         }
     }
     private static final class DN extends D {
@@ -198,23 +204,24 @@ public final class FixedSizeCharset extends Charset {
             for(int x = 0;x < N2;++x)
                 oa[indices[1]++] = (char)(
                     ia[indices[0]++] << 8 |
-                    ia[indices[0]++]
+                    ia[indices[0]++] & 0xFF
                 );
             if(mod)
-                oa[indices[1]++] = (char)
-                    ia[indices[0]++];
+                oa[indices[1]++] = (char)(
+                    ia[indices[0]++] & 0xFF
+                );
         }
         @Override
         void bufLoop(final ByteBuffer I,final CharBuffer O) {
             for(int x = 0;x < N2;++x)
                 O.put((char)(
                     I.get() << 8 |
-                    I.get()
+                    I.get() & 0xFF
                 ));
             if(mod)
-                O.put((char)
-                    I.get()
-                );
+                O.put((char)(
+                    I.get() & 0xFF
+                ));
         }
     }
     @Override
@@ -390,6 +397,13 @@ public final class FixedSizeCharset extends Charset {
                                final D d,final int ds,
                                final E e,final int es)
                                throws IOException,SecurityException {
+        if(ds + es == 3) {
+            try(FileChannel fc = FileChannel.open(f.toPath(),READ,WRITE)) {
+                if(ds == 1) widen(fc.position(fc.size()));
+                else fc.truncate(narrow(fc,0L,fc,0L));
+            }
+            return;
+        }
         final File tmp = Files.createTempFile(
             f.toPath().getParent(),
             "resize-temp",
@@ -458,53 +472,24 @@ public final class FixedSizeCharset extends Charset {
             if(from.size == to.size) return;
             resize(src,d,from.size,e,to.size);
         } else if(from.size == to.size) transferDirect(src,dst);
+        else if(from.size + to.size == 3) transferWidth(src,from.size,dst);
         else transferCoded(src,d,dst,e);
     }
-    // Same as E2, but detects whether all the characters it encodes can instead be
-    // encoded with E1 to save space.
-    private static final class Eauto extends E {
-        private boolean big = false;
-        private Eauto(final FixedSizeCharset cs) {super(cs,2f,E2.R2);}
-        
-        @Override int scaleIr(final int i) {return i;}
-        @Override int scaleOr(final int o) {return o / 2;}
-        @Override int scaleIl(final int l) {return l;}
-        @Override int scaleOl(final int l) {return l * 2;}
-        @Override void arrLoop(char[] ia,byte[] oa,int[] indices) {}
-        @Override void bufLoop(CharBuffer I,ByteBuffer O) {}
-        @Override
-        void doArrLoop(final char[] ia,final byte[] oa,
-                       int i,int o,int l) {
-            while(!big && l > 0) {
-                big = ia[i] > 0xFF;
-                oa[o++] = (byte)(ia[i] >>> 8);
-                oa[o++] = (byte)ia[i++];
-                --l;
-            }
-            while(l > 0) {
-                oa[o++] = (byte)(ia[i] >>> 8);
-                oa[o++] = (byte)ia[i++];
-                --l;
-            }
-        }
-        @Override
-        void doBufLoop(final CharBuffer I,final ByteBuffer O,int l) {
-            while(!big && l > 0) {
-                final char i = I.get();
-                big = i > 0xFF;
-                O.put((byte)(i >>> 8))
-                 .put((byte)i);
-                --l;
-            }
-            while(l > 0) {
-                final char i = I.get();
-                O.put((byte)(i >>> 8))
-                 .put((byte)i);
-                --l;
-            }
+    /**
+     * Copies the characters of a file with one or two bytes per character to a
+     * file with the other size, converting blocks of characters at once.
+     */
+    private static void transferWidth(final File src,final int from,final File dst) throws IOException {
+        try(FileChannel in = FileChannel.open(src.toPath(),READ);
+            FileChannel out = FileChannel.open(dst.toPath(),WRITE,CREATE,TRUNCATE_EXISTING)) {
+            if(from == 1) widen(in,out);
+            else narrow(in,0L,out,0L);
         }
     }
-    
+    /**@return <code>true</code> iff each byte of the charset decodes to the character with the same value.*/
+    private static boolean latin1(final Charset cs) {
+        return cs == Fixed_1 || cs.equals(StandardCharsets.ISO_8859_1);
+    }
     /**
      * Copies characters encoded by the specified charset from the source file and
      * writes them using the specified {@linkplain FixedSizeCharset}.
@@ -512,63 +497,240 @@ public final class FixedSizeCharset extends Charset {
     public static void transfer(final File src,final Charset scs,
                                 final File dst,final FixedSizeCharset dcs)
                                 throws IOException {
-        transferCoded(src,scs.newDecoder(),dst,dcs.newEncoder());
+        if(dcs.size == 2 && latin1(scs)) transferWidth(src,1,dst);
+        else transferCoded(src,scs.newDecoder(),dst,dcs.newEncoder());
+    }
+    /**
+     * Same as {@linkplain #transfer(File,Charset,File,FixedSizeCharset)}, but
+     * decodes chunks of the source in parallel on the pool when the charset can be
+     * split at character boundaries and the file is large enough. A
+     * <code>null</code> pool decodes the file on the calling thread.
+     */
+    public static void transfer(final File src,final Charset scs,
+                                final File dst,final FixedSizeCharset dcs,
+                                final ForkJoinPool pool)
+                                throws IOException {
+        if(dcs.size <= 2 && !(dcs.size == 2 && latin1(scs)) && parallel(src,scs,pool))
+            ChunkedTranscoder.transfer(src,dst,scs,dcs,pool);
+        else transfer(src,scs,dst,dcs);
     }
     /**
-     * Submits a data transfer task to the executor. If an exception is raised
-     * during execution, the executor will be shut down immediately and the returned
-     * future object will raise an exception when the get method is called.
+     * Same as {@linkplain #transfer(File,File,Charset)}, but decodes chunks of the
+     * source in parallel on the pool when the charset can be split at character
+     * boundaries and the file is large enough. A <code>null</code> pool decodes
+     * the file on the calling thread.
      */
-    private static Future<Void> transferTask(final File I,final CharsetDecoder D,
-                                             final File O,final CharsetEncoder E,
-                                             final ExecutorService exec) {
-        return exec.submit(() -> {
-            try {transferCoded(I,D,O,E); return null;}
-            catch(final Exception e) {exec.shutdownNow(); throw e;}
-        });
+    public static FixedSizeCharset transfer(final File src,final File dst,final Charset cs,
+                                            final ForkJoinPool pool)
+                                            throws IOException,SecurityException {
+        return parallel(src,cs,pool)? ChunkedTranscoder.transfer(src,dst,cs,null,pool)
+                                    : transfer(src,dst,cs);
+    }
+    private static boolean parallel(final File src,final Charset cs,final ForkJoinPool pool) {
+        return pool != null && pool.getParallelism() > 1 && src.length() > ChunkedTranscoder.CHUNK &&
+               ChunkedTranscoder.Split.of(cs) != ChunkedTranscoder.Split.NONE;
     }
+    /**The number of bytes read from the source file at once by {@linkplain #transfer(File,File,Charset)}.*/
+    static final int TRANSCODE_BLOCK = 1 << 16;
     /**
      * Copies characters encoded by the specified charset from the source file and
      * writes them using the smallest {@linkplain FixedSizeCharset} possible.
      * 
      * @return The {@linkplain FixedSizeCharset} used to encode the data.
+     * 
+     * @implNote The source is decoded once. The output is written with one byte
+     *           per character until the first character which needs two bytes,
+     *           at which point the characters already written are widened in
+     *           place.
      */
     public static FixedSizeCharset transfer(final File src,final File dst,final Charset cs)
                                             throws IOException,SecurityException {
-        
-        // If the charset encoder is 1 byte per char, do a simple copy.
-        if(cs.canEncode() && cs.newEncoder().maxBytesPerChar() == 1f)
-            transferCoded(src,cs.newDecoder(),dst,Fixed_1.newEncoder());
-        else {
-            // Write to the file using two bytes/character while also keeping track of the
-            // minimum size required to store all the characters. Also write a temp 1-byte
-            // file in case that the bytes/char is small.
-            final File tmp = Files.createTempFile(
-                dst.toPath().getParent(),
-                "decode-temp",
-                null
-            ).toFile();
-            tmp.deleteOnExit();
-            try {
-                {
-                    final E f1 = new E1   (Fixed_1),
-                            f2 = new Eauto(Fixed_2);
-                    try {
-                        final ExecutorService exec = Executors.newFixedThreadPool(2);
-                        final Future<Void> r1 = transferTask(src,cs.newDecoder(),tmp,f1,exec),
-                                           r2 = transferTask(src,cs.newDecoder(),dst,f2,exec);
-                        exec.shutdown();
-                        exec.awaitTermination(Long.MAX_VALUE,TimeUnit.DAYS);
-                        r1.get(); r2.get();
-                    } catch(final Exception e) {throw new IOException(e);}
-                    // Check to see if the encoder received a 2-byte character.
-                    if(((Eauto)f2).big) return Fixed_2;
-                }
-                // Move the condensed data back to the original file.
-                writeAndTruncate(tmp,dst);
-            } finally {tmp.delete();}
-        }
-        return Fixed_1;
+        final CharsetDecoder d = cs.newDecoder();
+        final ByteBuffer I = ByteBuffer.allocate(TRANSCODE_BLOCK),
+                         O = ByteBuffer.allocate(TRANSCODE_BLOCK << 1);
+        final CharBuffer C = CharBuffer.allocate(TRANSCODE_BLOCK);
+        boolean big = false;
+        try(FileChannel in = FileChannel.open(src.toPath(),READ);
+            FileChannel out = FileChannel.open(dst.toPath(),READ,WRITE,CREATE,TRUNCATE_EXISTING)) {
+            boolean eof = false;
+            CoderResult r;
+            do {
+                if(!eof) eof = in.read(I) == -1;
+                r = d.decode(I.flip(),C,eof);
+                I.compact();
+                if(r.isError()) r.throwException();
+                big = encode(C.flip(),O,out,big);
+                C.clear();
+            } while(!eof || r.isOverflow());
+            do {
+                r = d.flush(C);
+                big = encode(C.flip(),O,out,big);
+                C.clear();
+            } while(r.isOverflow());
+        }
+        return big? Fixed_2 : Fixed_1;
+    }
+    /**
+     * Writes the characters to the end of the file, widening the file first if
+     * it holds single-byte characters and a character needs two bytes.
+     * 
+     * @param big <code>true</code> iff the file holds two bytes per character.
+     * 
+     * @return <code>true</code> iff the file holds two bytes per character after
+     *         the write.
+     */
+    private static boolean encode(final CharBuffer C,final ByteBuffer O,
+                                  final FileChannel out,boolean big) throws IOException {
+        final char[] a = C.array();
+        int i = C.position();
+        final int l = C.limit();
+        O.clear();
+        if(!big) {
+            while(i != l && a[i] <= 0xFF) O.put((byte)a[i++]);
+            if(i != l) {
+                write(O.flip(),out);
+                O.clear();
+                widen(out);
+                big = true;
+            }
+        }
+        if(big) {
+            O.asCharBuffer().put(a,i,l - i);
+            O.position(l - i << 1);
+        }
+        write(O.flip(),out);
+        return big;
+    }
+    private static void write(final ByteBuffer O,final FileChannel out) throws IOException {
+        while(O.hasRemaining()) out.write(O);
+    }
+    /**
+     * Rewrites the single-byte characters in the file with two bytes each. The
+     * blocks are rewritten from the end of the file, so that no byte is overwritten
+     * before it is read.
+     */
+    private static void widen(final FileChannel f) throws IOException {
+        final long n = f.position();
+        final ByteBuffer I = ByteBuffer.allocate(TRANSCODE_BLOCK),
+                         O = ByteBuffer.allocate(TRANSCODE_BLOCK << 1);
+        for(long end = n;end != 0L;) {
+            final int len = (int)Math.min(end,TRANSCODE_BLOCK);
+            final long begin = end - len;
+            I.clear().limit(len);
+            while(I.hasRemaining())
+                if(f.read(I,begin + I.position()) == -1)
+                    throw new EOFException();
+            Widener.KERNEL.widen(I.array(),0,O.array(),0,len);
+            for(O.clear().limit(len << 1);O.hasRemaining();) f.write(O,(begin << 1) + O.position());
+            end = begin;
+        }
+        f.position(n << 1);
+    }
+    /**Writes the single-byte characters of the input to the output with two bytes each.*/
+    private static void widen(final FileChannel in,final FileChannel out) throws IOException {
+        final ByteBuffer I = ByteBuffer.allocate(TRANSCODE_BLOCK),
+                         O = ByteBuffer.allocate(TRANSCODE_BLOCK << 1);
+        for(int n;(n = in.read(I.clear())) != -1;) {
+            Widener.KERNEL.widen(I.array(),0,O.array(),0,n);
+            write(O.clear().limit(n << 1),out);
+        }
+    }
+    /**
+     * Writes the low byte of each two-byte character of the input, starting at
+     * the position <code>from</code>, to the output starting at <code>to</code>.
+     * The input and output may be the same file, as long as <code>to</code> is
+     * not after <code>from</code>.
+     * 
+     * @return The position in the output after the last character.
+     */
+    private static long narrow(final FileChannel in,long from,final FileChannel out,long to) throws IOException {
+        final ByteBuffer I = ByteBuffer.allocate(TRANSCODE_BLOCK << 1),
+                         O = ByteBuffer.allocate(TRANSCODE_BLOCK);
+        final byte[] a = I.array(),o = O.array();
+        for(int r;(r = in.read(I,from)) != -1;) {
+            from += r;
+            final int n = I.position() >>> 1;
+            // Characters which need two bytes keep their low byte, like the encoder.
+            for(int i = 0;(i += Widener.KERNEL.narrow(a,i << 1,o,i,n - i)) != n;++i)
+                o[i] = a[(i << 1) + 1];
+            I.flip().position(n << 1);
+            I.compact();
+            for(O.clear().limit(n);O.hasRemaining();) to += out.write(O,to);
+        }
+        return to;
+    }
+    
+    /**
+     * Writes each of the bytes in the range <code>[srcOff,srcOff + len)</code> of
+     * the source as a big-endian character of two bytes, starting at index
+     * <code>dstOff</code> of the destination. This is the conversion from
+     * {@linkplain #Fixed_1} to {@linkplain #Fixed_2}.
+     * 
+     * @throws IndexOutOfBoundsException Either range is out of bounds.
+     */
+    public static void widen(final byte[] src,final int srcOff,
+                             final byte[] dst,final int dstOff,final int len)
+                             throws IndexOutOfBoundsException {
+        Objects.checkFromIndexSize(srcOff,len,src.length);
+        Objects.checkFromIndexSize(dstOff,len << 1,dst.length);
+        Widener.KERNEL.widen(src,srcOff,dst,dstOff,len);
+    }
+    /**
+     * Writes the low byte of each of the <code>len</code> big-endian characters
+     * of two bytes which start at index <code>srcOff</code> of the source,
+     * starting at index <code>dstOff</code> of the destination. This is the
+     * conversion from {@linkplain #Fixed_2} to {@linkplain #Fixed_1}, which stops
+     * at the first character which does not fit in one byte.
+     * 
+     * @return The number of characters converted, which is less than
+     *         <code>len</code> iff the next character needs two bytes.
+     * 
+     * @throws IndexOutOfBoundsException Either range is out of bounds.
+     */
+    public static int narrow(final byte[] src,final int srcOff,
+                             final byte[] dst,final int dstOff,final int len)
+                             throws IndexOutOfBoundsException {
+        Objects.checkFromIndexSize(srcOff,len << 1,src.length);
+        Objects.checkFromIndexSize(dstOff,len,dst.length);
+        return Widener.KERNEL.narrow(src,srcOff,dst,dstOff,len);
+    }
+    
+    /**
+     * Decodes characters encoded by this charset from the buffer into the array,
+     * starting at the buffer's position. The position is advanced past the
+     * consumed bytes. Multi-byte characters are read in the buffer's byte order,
+     * which should be big-endian.
+     * 
+     * @param src The encoded characters.
+     * @param dst The array which receives the decoded characters.
+     * @param off The index in the array of the first character.
+     * @param len The number of characters to decode.
+     * 
+     * @throws BufferUnderflowException  The buffer does not hold enough bytes.
+     * @throws IndexOutOfBoundsException The array cannot hold the characters at
+     *                                   the specified offset.
+     */
+    public void decode(final ByteBuffer src,final char[] dst,final int off,final int len)
+                       throws BufferUnderflowException,IndexOutOfBoundsException {
+        Objects.checkFromIndexSize(off,len,dst.length);
+        final int p = src.position();
+        switch(size) {
+            case 1 -> {
+                if(src.remaining() < len) throw new BufferUnderflowException();
+                if(src.hasArray()) {
+                    final byte[] a = src.array();
+                    final int o = src.arrayOffset() + p;
+                    for(int i = 0;i < len;++i) dst[off + i] = (char)(a[o + i] & 0xFF);
+                } else
+                    for(int i = 0;i < len;++i) dst[off + i] = (char)(src.get(p + i) & 0xFF);
+                src.position(p + len);
+            }
+            case 2 -> {
+                src.asCharBuffer().get(dst,off,len);
+                src.position(p + (len << 1));
+            }
+            default -> newDecoder().decode(src,CharBuffer.wrap(dst,off,len),true);
+        }
     }
     
     /**
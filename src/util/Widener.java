@@ -0,0 +1,85 @@
+package util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Kernels which convert between characters of one byte and big-endian
+ * characters of two bytes, used by the bulk transfers between
+ * {@linkplain FixedSizeCharset#Fixed_1} and {@linkplain FixedSizeCharset#Fixed_2}.
+ * <p>
+ * This implementation converts eight characters at a time in a
+ * <code>long</code>. When the <code>jdk.incubator.vector</code> module is
+ * present, {@linkplain #KERNEL} is replaced by a vectorized subclass which is
+ * only compiled for newer JDKs. Setting the system property
+ * <code>sequence.noVector</code> to <code>true</code> forces these kernels.
+ * 
+ * @author AzureTriple
+ */
+class Widener {
+    Widener() {}
+    
+    /**The kernels used by this process.*/
+    static final Widener KERNEL = load();
+    private static Widener load() {
+        if(!Boolean.getBoolean("sequence.noVector") &&
+           ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (Widener)Class.forName("util.VectorWidener")
+                                     .getDeclaredConstructor()
+                                     .newInstance();
+            } catch(final ReflectiveOperationException|LinkageError e) {}
+        }
+        return new Widener();
+    }
+    
+    static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class,ByteOrder.BIG_ENDIAN);
+    /**The high byte of each character in a <code>long</code>.*/
+    static final long HIGH = 0xFF00FF00FF00FF00L;
+    
+    /**@return The four bytes in the low half of the argument, each in the low byte of a character.*/
+    static long spread(long x) {
+        x = (x & 0x00000000FFFFFFFFL | x << 16) & 0x0000FFFF0000FFFFL;
+        return (x | x << 8) & 0x00FF00FF00FF00FFL;
+    }
+    /**@return The low bytes of the four characters, in the low half of the result.*/
+    static long gather(long x) {
+        x = (x | x >>> 8) & 0x0000FFFF0000FFFFL;
+        return (x | x >>> 16) & 0x00000000FFFFFFFFL;
+    }
+    
+    /**
+     * Writes each of the <code>n</code> bytes of the source starting at
+     * <code>s</code> as a two-byte character, starting at <code>d</code>.
+     */
+    void widen(final byte[] src,int s,final byte[] dst,int d,int n) {
+        for(;n >= 8;n -= 8,s += 8,d += 16) {
+            final long x = (long)LONGS.get(src,s);
+            LONGS.set(dst,d,spread(x >>> 32));
+            LONGS.set(dst,d + 8,spread(x));
+        }
+        for(;n != 0;--n) {
+            dst[d++] = 0;
+            dst[d++] = src[s++];
+        }
+    }
+    /**
+     * Writes the low byte of each of the <code>n</code> two-byte characters of
+     * the source starting at <code>s</code>, starting at <code>d</code>.
+     * 
+     * @return The number of characters written, which is less than
+     *         <code>n</code> iff the next character needs two bytes.
+     */
+    int narrow(final byte[] src,final int s,final byte[] dst,final int d,final int n) {
+        int i = 0;
+        for(;n - i >= 8;i += 8) {
+            final long a = (long)LONGS.get(src,s + (i << 1)),
+                       b = (long)LONGS.get(src,s + (i << 1) + 8);
+            if(((a | b) & HIGH) != 0L) break;
+            LONGS.set(dst,d + i,gather(a) << 32 | gather(b));
+        }
+        for(;i != n && src[s + (i << 1)] == 0;++i) dst[d + i] = src[s + (i << 1) + 1];
+        return i;
+    }
+}
\ No newline at end of file